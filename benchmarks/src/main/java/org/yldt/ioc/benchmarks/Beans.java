@@ -0,0 +1,73 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc.benchmarks;
+
+import org.yldt.ioc.annotations.Inject;
+
+/**
+ * Beans used by the benchmarks.
+ * 
+ * @author Yun Liu
+ */
+public final class Beans {
+	private Beans() {
+	}
+
+	public static class Service {
+	}
+
+	public static class Repository {
+	}
+
+	public static class Cache {
+	}
+
+	public static class ConstructorInjected {
+		final Service service;
+		final Repository repository;
+		final Cache cache;
+
+		public ConstructorInjected(final Service service,
+				final Repository repository, final Cache cache) {
+			this.service = service;
+			this.repository = repository;
+			this.cache = cache;
+		}
+	}
+
+	public static class FieldInjected {
+		@Inject
+		Service service;
+		@Inject
+		Repository repository;
+		@Inject
+		Cache cache;
+	}
+
+	public static class MethodInjected {
+		Service service;
+		Repository repository;
+		Cache cache;
+
+		@Inject
+		void inject(final Service service, final Repository repository,
+				final Cache cache) {
+			this.service = service;
+			this.repository = repository;
+			this.cache = cache;
+		}
+	}
+}
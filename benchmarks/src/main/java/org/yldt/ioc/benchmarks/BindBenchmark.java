@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.yldt.ioc.ApplicationBeanManager;
+import org.yldt.ioc.Bindings;
+import org.yldt.ioc.benchmarks.Beans.Service;
+
+/**
+ * Binding beans into a new container, one by one and as a batch.
+ * 
+ * @author Yun Liu
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BindBenchmark {
+	private static final int BEANS = 100;
+	private final String[] names = new String[BEANS];
+
+	@Setup
+	public void setup() {
+		for (int i = 0; i < BEANS; i++)
+			names[i] = "service" + i;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BEANS)
+	public ApplicationBeanManager bind() {
+		final ApplicationBeanManager manager = new ApplicationBeanManager();
+		for (final String name : names)
+			manager.bind(Service.class, name);
+		return manager;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BEANS)
+	public ApplicationBeanManager bindBatch() {
+		final ApplicationBeanManager manager = new ApplicationBeanManager();
+		final Bindings bindings = manager.bindings();
+		for (final String name : names)
+			bindings.bind(Service.class, name);
+		bindings.commit();
+		return manager;
+	}
+}
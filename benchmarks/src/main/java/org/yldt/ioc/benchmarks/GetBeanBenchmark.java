@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.yldt.ioc.ApplicationBeanManager;
+import org.yldt.ioc.benchmarks.Beans.Cache;
+import org.yldt.ioc.benchmarks.Beans.Repository;
+import org.yldt.ioc.benchmarks.Beans.Service;
+
+/**
+ * Obtaining a started singleton by type and by name from a shared container.
+ * 
+ * @author Yun Liu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GetBeanBenchmark {
+	private ApplicationBeanManager manager;
+
+	@Setup
+	public void setup() {
+		manager = new ApplicationBeanManager();
+		manager.bind(Service.class, "service");
+		manager.bind(Repository.class);
+		manager.bind(Cache.class);
+		manager.startAll();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Service byClass1() {
+		return manager.getBean(Service.class);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public Service byClass4() {
+		return manager.getBean(Service.class);
+	}
+
+	@Benchmark
+	@Threads(16)
+	public Service byClass16() {
+		return manager.getBean(Service.class);
+	}
+
+	@Benchmark
+	@Threads(64)
+	public Service byClass64() {
+		return manager.getBean(Service.class);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Service byName1() {
+		return manager.getBean("service", Service.class);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public Service byName4() {
+		return manager.getBean("service", Service.class);
+	}
+
+	@Benchmark
+	@Threads(16)
+	public Service byName16() {
+		return manager.getBean("service", Service.class);
+	}
+
+	@Benchmark
+	@Threads(64)
+	public Service byName64() {
+		return manager.getBean("service", Service.class);
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.yldt.ioc.ApplicationBeanManager;
+import org.yldt.ioc.benchmarks.Beans.Cache;
+import org.yldt.ioc.benchmarks.Beans.ConstructorInjected;
+import org.yldt.ioc.benchmarks.Beans.FieldInjected;
+import org.yldt.ioc.benchmarks.Beans.MethodInjected;
+import org.yldt.ioc.benchmarks.Beans.Repository;
+import org.yldt.ioc.benchmarks.Beans.Service;
+
+/**
+ * Creating a prototype bean with three dependencies injected through its
+ * constructor, its fields or a method.
+ * 
+ * @author Yun Liu
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class InjectionBenchmark {
+	private ApplicationBeanManager manager;
+
+	@Setup
+	public void setup() {
+		manager = new ApplicationBeanManager();
+		manager.bind(Service.class);
+		manager.bind(Repository.class);
+		manager.bind(Cache.class);
+		manager.bind(ConstructorInjected.class,
+				org.yldt.ioc.Scope.Prototype);
+		manager.bind(FieldInjected.class, org.yldt.ioc.Scope.Prototype);
+		manager.bind(MethodInjected.class, org.yldt.ioc.Scope.Prototype);
+		manager.startAll();
+	}
+
+	@Benchmark
+	public ConstructorInjected constructor() {
+		return manager.getBean(ConstructorInjected.class);
+	}
+
+	@Benchmark
+	public FieldInjected field() {
+		return manager.getBean(FieldInjected.class);
+	}
+
+	@Benchmark
+	public MethodInjected method() {
+		return manager.getBean(MethodInjected.class);
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.yldt.ioc.ApplicationBeanManager;
+import org.yldt.ioc.SyntheticGraph;
+import org.yldt.ioc.SyntheticGraph.Injection;
+import org.yldt.ioc.SyntheticGraph.Shape;
+
+/**
+ * Listing the beans of a started container.
+ * 
+ * @author Yun Liu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ListBeansBenchmark {
+	@Param({ "1000" })
+	private int size;
+
+	private ApplicationBeanManager manager;
+
+	@Setup
+	public void setup() {
+		manager = new ApplicationBeanManager();
+		SyntheticGraph.generate(Shape.Diamond, size, Injection.Constructor)
+				.bind(manager);
+		manager.startAll();
+	}
+
+	@Benchmark
+	public List<Object> listBeans() {
+		return manager.listBeans();
+	}
+}
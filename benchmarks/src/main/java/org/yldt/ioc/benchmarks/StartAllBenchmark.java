@@ -0,0 +1,70 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.yldt.ioc.ApplicationBeanManager;
+import org.yldt.ioc.SyntheticGraph;
+import org.yldt.ioc.SyntheticGraph.Injection;
+import org.yldt.ioc.SyntheticGraph.Shape;
+
+/**
+ * Starting a new container binding a generated graph. The classes are
+ * generated once per trial, so the cost of analyzing their injection plans is
+ * only measured on the first invocation.
+ * 
+ * @author Yun Liu
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StartAllBenchmark {
+	@Param({ "Wide", "Deep", "Diamond" })
+	private Shape shape;
+
+	@Param({ "100", "1000" })
+	private int size;
+
+	private SyntheticGraph graph;
+	private ApplicationBeanManager manager;
+
+	@Setup(Level.Trial)
+	public void generate() {
+		graph = SyntheticGraph.generate(shape, size, Injection.Constructor);
+	}
+
+	@Setup(Level.Invocation)
+	public void bind() {
+		manager = new ApplicationBeanManager();
+		graph.bind(manager);
+	}
+
+	@Benchmark
+	public ApplicationBeanManager startAll() {
+		manager.startAll();
+		return manager;
+	}
+}
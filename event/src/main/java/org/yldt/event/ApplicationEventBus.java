@@ -35,6 +35,7 @@ import org.yldt.logging.Logger;
 public class ApplicationEventBus implements EventBus {
 	private final ConcurrentMap<Class<?>, List<EventHandler<?>>> registry;
 	private static final Logger logger = LogManager.getLogger(ApplicationEventBus.class);
+	private volatile DispatchTracer tracer;
 
 	public ApplicationEventBus() {
 		registry = new ConcurrentHashMap<Class<?>, List<EventHandler<?>>>();
@@ -174,7 +175,7 @@ public class ApplicationEventBus implements EventBus {
 			for (final EventHandler<?> handler : handlers) {
 				@SuppressWarnings("unchecked")
 				final EventHandler<T> typedHandler = (EventHandler<T>) handler;
-				typedHandler.onEvent(event);
+				dispatch(typedHandler, event);
 				logEventHandled(typedHandler, event);
 			}
 		} else {
@@ -182,6 +183,40 @@ public class ApplicationEventBus implements EventBus {
 		}
 	}
 
+	private <T extends Event> void dispatch(final EventHandler<T> handler,
+			final T event) {
+		final DispatchTracer tracer = this.tracer;
+		if (tracer == null) {
+			handler.onEvent(event);
+			return;
+		}
+		final Object context = tracer.begin(event, handler);
+		Throwable failure = null;
+		try {
+			handler.onEvent(event);
+		} catch (final RuntimeException e) {
+			failure = e;
+			throw e;
+		} catch (final Error e) {
+			failure = e;
+			throw e;
+		} finally {
+			tracer.end(context, failure);
+		}
+	}
+
+	/**
+	 * Trace the handler invocations with <code>tracer</code>, or stop tracing
+	 * if <code>null</code>.
+	 */
+	public void setTracer(final DispatchTracer tracer) {
+		this.tracer = tracer;
+	}
+
+	public DispatchTracer getTracer() {
+		return tracer;
+	}
+
 	private <T> List<EventHandler<?>> getHandlersFor(final T event) {
 		List<EventHandler<?>> handlers = new LinkedList<EventHandler<?>>();
 		Class<?> eventClass = event.getClass();
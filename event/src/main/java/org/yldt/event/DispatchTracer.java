@@ -0,0 +1,41 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.event;
+
+/**
+ * Receives the begin and end of each handler invocation of an
+ * {@link ApplicationEventBus}, set with
+ * {@link ApplicationEventBus#setTracer(DispatchTracer)}. Handlers run on the
+ * thread firing the event.
+ * 
+ * @author Yun Liu
+ */
+public interface DispatchTracer {
+	/**
+	 * Called before <code>handler</code> handles <code>event</code>.
+	 * 
+	 * @return a context handed back to {@link #end(Object, Throwable)}, may be
+	 *         <code>null</code>.
+	 */
+	public Object begin(Event event, EventHandler<?> handler);
+
+	/**
+	 * Called after the handler returned or failed.
+	 * 
+	 * @param failure the exception thrown by the handler, or <code>null</code>.
+	 */
+	public void end(Object context, Throwable failure);
+}
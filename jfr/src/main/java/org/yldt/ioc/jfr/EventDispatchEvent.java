@@ -0,0 +1,43 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * @author Yun Liu
+ */
+@Name("org.yldt.event.EventDispatch")
+@Label("Event Dispatch")
+@Category({ "minioc", "Events" })
+@Description("Invocation of an event handler by the event bus.")
+public class EventDispatchEvent extends Event {
+	@Label("Event Type")
+	Class<?> eventType;
+
+	@Label("Handler")
+	String handler;
+
+	@Label("Handler Type")
+	Class<?> handlerType;
+
+	@Label("Failure")
+	String failure;
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc.jfr;
+
+import org.yldt.event.ApplicationEventBus;
+import org.yldt.event.DispatchTracer;
+import org.yldt.event.Event;
+import org.yldt.event.EventHandler;
+
+/**
+ * Records an {@link EventDispatchEvent} for each handler invocation, when the
+ * event is enabled in a Flight Recorder recording. Install it with
+ * {@link ApplicationEventBus#setTracer(DispatchTracer)}.
+ * 
+ * @author Yun Liu
+ */
+public class JfrDispatchTracer implements DispatchTracer {
+
+	public Object begin(final Event event, final EventHandler<?> handler) {
+		final EventDispatchEvent dispatch = new EventDispatchEvent();
+		if (!dispatch.isEnabled())
+			return null;
+		dispatch.eventType = event.getClass();
+		dispatch.handler = handler.toString();
+		dispatch.handlerType = handler.getClass();
+		dispatch.begin();
+		return dispatch;
+	}
+
+	public void end(final Object context, final Throwable failure) {
+		if (context == null)
+			return;
+		final EventDispatchEvent dispatch = (EventDispatchEvent) context;
+		dispatch.end();
+		if (dispatch.shouldCommit()) {
+			if (failure != null)
+				dispatch.failure = failure.toString();
+			dispatch.commit();
+		}
+	}
+}
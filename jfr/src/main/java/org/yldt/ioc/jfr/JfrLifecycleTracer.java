@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc.jfr;
+
+import org.yldt.ioc.ApplicationBeanManager;
+import org.yldt.ioc.LifecycleTracer;
+
+/**
+ * Records a {@link BeanEvent} for each life cycle operation of the beans, when
+ * the event is enabled in a Flight Recorder recording. Install it with
+ * {@link ApplicationBeanManager#setTracer(LifecycleTracer)}.
+ * 
+ * @author Yun Liu
+ */
+public class JfrLifecycleTracer implements LifecycleTracer {
+
+	public Object begin(final Operation operation, final String name,
+			final Class<?> type) {
+		final BeanEvent event = newEvent(operation);
+		if (!event.isEnabled())
+			return null;
+		event.beanName = name;
+		event.beanType = type;
+		event.begin();
+		return event;
+	}
+
+	public void end(final Object context, final Throwable failure) {
+		if (context == null)
+			return;
+		final BeanEvent event = (BeanEvent) context;
+		event.end();
+		if (event.shouldCommit()) {
+			if (failure != null)
+				event.failure = failure.toString();
+			event.commit();
+		}
+	}
+
+	private static BeanEvent newEvent(final Operation operation) {
+		switch (operation) {
+		case Construction:
+			return new BeanConstructionEvent();
+		case Injection:
+			return new BeanInjectionEvent();
+		case Start:
+			return new BeanStartEvent();
+		case Shutdown:
+			return new BeanShutdownEvent();
+		default:
+			throw new IllegalArgumentException("Unknown operation ["
+					+ operation + "]");
+		}
+	}
+}
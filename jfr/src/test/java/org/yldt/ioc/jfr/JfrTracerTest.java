@@ -0,0 +1,156 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+import org.yldt.event.ApplicationEventBus;
+import org.yldt.event.Event;
+import org.yldt.event.EventHandler;
+import org.yldt.ioc.ApplicationBeanManager;
+import org.yldt.ioc.LifeCycle;
+
+/**
+ * 
+ * @author Yun Liu
+ *
+ */
+public class JfrTracerTest {
+
+    public static class Dependency {
+    }
+
+    public static class StartedBean implements LifeCycle {
+        public StartedBean(Dependency dependency) {
+        }
+
+        public void onStart() {
+        }
+
+        public void onShutdown() {
+        }
+    }
+
+    public static class Fired implements Event {
+    }
+
+    @Test
+    public void testRecordsBeanLifecycle() throws IOException {
+        Recording recording = newRecording();
+        try {
+            recording.start();
+            ApplicationBeanManager manager = new ApplicationBeanManager();
+            manager.setTracer(new JfrLifecycleTracer());
+            manager.bind(Dependency.class);
+            manager.bind(StartedBean.class);
+            manager.startAll();
+            manager.shutdown();
+            recording.stop();
+
+            List<RecordedEvent> events = events(recording);
+            assertEquals(1, count(events, "org.yldt.ioc.BeanConstruction", StartedBean.class));
+            assertEquals(1, count(events, "org.yldt.ioc.BeanConstruction", Dependency.class));
+            assertEquals(1, count(events, "org.yldt.ioc.BeanInjection", StartedBean.class));
+            assertEquals(1, count(events, "org.yldt.ioc.BeanStart", StartedBean.class));
+            assertEquals(1, count(events, "org.yldt.ioc.BeanShutdown", StartedBean.class));
+        } finally {
+            recording.close();
+        }
+    }
+
+    @Test
+    public void testRecordsHandlerDispatch() throws IOException {
+        Recording recording = newRecording();
+        try {
+            recording.start();
+            ApplicationEventBus bus = new ApplicationEventBus();
+            bus.setTracer(new JfrDispatchTracer());
+            EventHandler<Fired> handler = new EventHandler<Fired>() {
+                public void onEvent(Fired event) {
+                }
+
+                @Override
+                public String toString() {
+                    return "firedHandler";
+                }
+            };
+            bus.registerHandler(Fired.class, handler);
+            bus.fire(new Fired());
+            recording.stop();
+
+            List<RecordedEvent> dispatches = new ArrayList<RecordedEvent>();
+            for (RecordedEvent event : events(recording))
+                if (event.getEventType().getName().equals("org.yldt.event.EventDispatch"))
+                    dispatches.add(event);
+            assertEquals(1, dispatches.size());
+            assertEquals("firedHandler", dispatches.get(0).getString("handler"));
+            assertEquals(Fired.class.getName(), dispatches.get(0).getClass("eventType").getName());
+        } finally {
+            recording.close();
+        }
+    }
+
+    @Test
+    public void testNothingRecordedWhenDisabled() {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        JfrLifecycleTracer tracer = new JfrLifecycleTracer();
+        manager.setTracer(tracer);
+        manager.bind(Dependency.class);
+        assertTrue(manager.getBean(Dependency.class) != null);
+        assertEquals(null, tracer.begin(org.yldt.ioc.LifecycleTracer.Operation.Start, "bean", Object.class));
+    }
+
+    private Recording newRecording() {
+        Recording recording = new Recording();
+        recording.enable(BeanConstructionEvent.class).withoutStackTrace();
+        recording.enable(BeanInjectionEvent.class).withoutStackTrace();
+        recording.enable(BeanStartEvent.class).withoutStackTrace();
+        recording.enable(BeanShutdownEvent.class).withoutStackTrace();
+        recording.enable(EventDispatchEvent.class).withoutStackTrace();
+        return recording;
+    }
+
+    private List<RecordedEvent> events(Recording recording) throws IOException {
+        Path file = Files.createTempFile("minioc", ".jfr");
+        try {
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private int count(List<RecordedEvent> events, String name, Class<?> beanType) {
+        int count = 0;
+        for (RecordedEvent event : events)
+            if (event.getEventType().getName().equals(name)
+                    && event.getClass("beanType").getName().equals(beanType.getName()))
+                count++;
+        return count;
+    }
+}
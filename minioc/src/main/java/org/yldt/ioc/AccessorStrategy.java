@@ -0,0 +1,37 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+/**
+ * Defines how a ResourceManager calls the constructors, fields and injector
+ * methods of its beans. Select it per container with
+ * {@link ApplicationBeanManager#setAccessorStrategy(AccessorStrategy)}; the
+ * <code>org.yldt.ioc.accessors</code> system property only sets the strategy
+ * of the containers that do not select one.
+ * 
+ * @author Yun Liu
+ */
+public enum AccessorStrategy {
+	/**
+	 * Members are called through method handles, falling back to reflection
+	 * for any member that cannot be unreflected. This is the default.
+	 */
+	MethodHandles,
+	/**
+	 * Members are called with core reflection.
+	 */
+	Reflection
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.yldt.logging.LogManager;
+import org.yldt.logging.Logger;
+
+/**
+ * Strategy turning constructors, fields and injector methods into accessors
+ * used to build beans. Accessors are created once per member when an
+ * {@link InjectionPlan} is computed.
+ * 
+ * Each container selects its {@link AccessorStrategy}. The default strategy
+ * is set with the <code>org.yldt.ioc.accessors</code> system property:
+ * <code>methodhandles</code>(default) or <code>reflection</code>. The method
+ * handle strategy falls back to reflection for any member it cannot
+ * unreflect.
+ * 
+ * @author Yun Liu
+ */
+abstract class Accessors {
+	private static final Logger logger = LogManager.getLogger(Accessors.class);
+
+	public static final String STRATEGY_PROPERTY = "org.yldt.ioc.accessors";
+
+	static final Accessors REFLECTION = new ReflectionAccessors();
+	static final Accessors METHOD_HANDLES = new MethodHandleAccessors();
+
+	private static final AccessorStrategy defaultStrategy = "reflection"
+			.equalsIgnoreCase(System.getProperty(STRATEGY_PROPERTY)) ? AccessorStrategy.Reflection
+			: AccessorStrategy.MethodHandles;
+
+	public static AccessorStrategy getDefaultStrategy() {
+		return defaultStrategy;
+	}
+
+	public static Accessors of(final AccessorStrategy strategy) {
+		return strategy == AccessorStrategy.Reflection ? REFLECTION
+				: METHOD_HANDLES;
+	}
+
+	/**
+	 * The constructor and members passed to the factory methods are already
+	 * accessible.
+	 */
+	public abstract Instantiator instantiator(Constructor<?> constructor);
+
+	public abstract FieldSetter fieldSetter(Field field);
+
+	public abstract MethodInvoker methodInvoker(Method method);
+
+	interface Instantiator {
+		Object newInstance(Object[] arguments) throws InstantiationException,
+				IllegalAccessException, InvocationTargetException;
+	}
+
+	interface FieldSetter {
+		void set(Object target, Object value) throws IllegalAccessException;
+	}
+
+	interface MethodInvoker {
+		void invoke(Object target, Object[] arguments)
+				throws IllegalAccessException, InvocationTargetException;
+	}
+
+	private static final class ReflectionAccessors extends Accessors {
+		@Override
+		public Instantiator instantiator(final Constructor<?> constructor) {
+			return new Instantiator() {
+				public Object newInstance(final Object[] arguments)
+						throws InstantiationException, IllegalAccessException,
+						InvocationTargetException {
+					return constructor.newInstance(arguments);
+				}
+			};
+		}
+
+		@Override
+		public FieldSetter fieldSetter(final Field field) {
+			return new FieldSetter() {
+				public void set(final Object target, final Object value)
+						throws IllegalAccessException {
+					field.set(target, value);
+				}
+			};
+		}
+
+		@Override
+		public MethodInvoker methodInvoker(final Method method) {
+			return new MethodInvoker() {
+				public void invoke(final Object target, final Object[] arguments)
+						throws IllegalAccessException,
+						InvocationTargetException {
+					method.invoke(target, arguments);
+				}
+			};
+		}
+	}
+
+	/**
+	 * Adapts each member to a method handle of a fixed erased type so that it
+	 * can be called with <code>invokeExact</code>, avoiding the reflective
+	 * access checks on every call.
+	 */
+	private static final class MethodHandleAccessors extends Accessors {
+		private static final MethodType INSTANTIATOR_TYPE = MethodType
+				.methodType(Object.class, Object[].class);
+		private static final MethodType SETTER_TYPE = MethodType.methodType(
+				void.class, Object.class, Object.class);
+		private static final MethodType INVOKER_TYPE = MethodType.methodType(
+				void.class, Object.class, Object[].class);
+
+		private static final MethodHandle TARGET_FAILURE;
+		static {
+			try {
+				TARGET_FAILURE = MethodHandles.lookup().findStatic(
+						MethodHandleAccessors.class, "targetFailure",
+						MethodType.methodType(Object.class, Throwable.class));
+			} catch (final ReflectiveOperationException e) {
+				throw new ExceptionInInitializerError(e);
+			}
+		}
+
+		private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+		@Override
+		public Instantiator instantiator(final Constructor<?> constructor) {
+			final MethodHandle handle;
+			try {
+				handle = catchTargetFailure(
+						lookup.unreflectConstructor(constructor)).asType(MethodType.genericMethodType(
+								constructor.getParameterTypes().length))
+						.asSpreader(Object[].class,
+								constructor.getParameterTypes().length)
+						.asType(INSTANTIATOR_TYPE);
+			} catch (final IllegalAccessException e) {
+				logFallback(constructor, e);
+				return REFLECTION.instantiator(constructor);
+			}
+			return new Instantiator() {
+				public Object newInstance(final Object[] arguments)
+						throws InvocationTargetException {
+					try {
+						return (Object) handle.invokeExact(arguments);
+					} catch (final TargetFailure e) {
+						throw new InvocationTargetException(e.getCause());
+					} catch (final RuntimeException e) {
+						throw e;
+					} catch (final Error e) {
+						throw e;
+					} catch (final Throwable e) {
+						throw new IllegalStateException(e);
+					}
+				}
+			};
+		}
+
+		@Override
+		public FieldSetter fieldSetter(final Field field) {
+			final MethodHandle handle;
+			try {
+				handle = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+			} catch (final IllegalAccessException e) {
+				logFallback(field, e);
+				return REFLECTION.fieldSetter(field);
+			}
+			return new FieldSetter() {
+				public void set(final Object target, final Object value) {
+					try {
+						handle.invokeExact(target, value);
+					} catch (final RuntimeException e) {
+						throw e;
+					} catch (final Error e) {
+						throw e;
+					} catch (final Throwable e) {
+						throw new IllegalStateException(e);
+					}
+				}
+			};
+		}
+
+		@Override
+		public MethodInvoker methodInvoker(final Method method) {
+			final MethodHandle handle;
+			final int parameterCount = method.getParameterTypes().length;
+			try {
+				handle = catchTargetFailure(lookup.unreflect(method)).asType(MethodType.genericMethodType(parameterCount + 1)
+								.changeReturnType(void.class))
+						.asSpreader(Object[].class, parameterCount)
+						.asType(INVOKER_TYPE);
+			} catch (final IllegalAccessException e) {
+				logFallback(method, e);
+				return REFLECTION.methodInvoker(method);
+			}
+			return new MethodInvoker() {
+				public void invoke(final Object target, final Object[] arguments)
+						throws InvocationTargetException {
+					try {
+						handle.invokeExact(target, arguments);
+					} catch (final TargetFailure e) {
+						throw new InvocationTargetException(e.getCause());
+					} catch (final RuntimeException e) {
+						throw e;
+					} catch (final Error e) {
+						throw e;
+					} catch (final Throwable e) {
+						throw new IllegalStateException(e);
+					}
+				}
+			};
+		}
+
+		/**
+		 * Wrap what the member itself throws in a {@link TargetFailure}, so it
+		 * can be told apart from the failures of the adapting handles, e.g. a
+		 * {@link ClassCastException} for an argument of the wrong type.
+		 */
+		private MethodHandle catchTargetFailure(final MethodHandle target) {
+			final MethodType type = target.type();
+			final MethodHandle handler = MethodHandles.dropArguments(
+					TARGET_FAILURE.asType(MethodType.methodType(
+							type.returnType(), Throwable.class)), 1,
+					type.parameterList());
+			return MethodHandles.catchException(target, Throwable.class,
+					handler);
+		}
+
+		@SuppressWarnings("unused")
+		private static Object targetFailure(final Throwable failure) {
+			throw new TargetFailure(failure);
+		}
+
+		private void logFallback(final Object member,
+				final IllegalAccessException e) {
+			if (logger.isDebugEnabled())
+				logger.debug("Unable to create method handle for [" + member
+						+ "], using reflection. " + e.getMessage());
+		}
+	}
+
+	private static final class TargetFailure extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		TargetFailure(final Throwable cause) {
+			super(null, cause, false, false);
+		}
+	}
+}
@@ -15,20 +15,40 @@
  */
 package org.yldt.ioc;
 
-import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
+import org.yldt.ioc.InjectionPlan.FieldInjection;
+import org.yldt.ioc.InjectionPlan.MethodInjection;
+import org.yldt.ioc.ShutdownReport.Outcome;
 import org.yldt.ioc.annotations.Bean;
-import org.yldt.ioc.annotations.Inject;
 import org.yldt.logging.LogManager;
 import org.yldt.logging.Logger;
 
@@ -40,26 +60,79 @@ import org.yldt.logging.Logger;
 public class ApplicationBeanManager implements ResourceManager {
 	private static final Logger logger = LogManager
 			.getLogger(ApplicationBeanManager.class);
-	private final ConcurrentMap<String, Resource> resources;
+	// resolves the beans not registered in this container, or null
+	private final ApplicationBeanManager parent;
+	// the maps below are replaced by empty ones once frozen
+	private volatile ConcurrentMap<String, Resource> resources;
+	// resources obtained by type, keyed by the identity of the class. Entries
+	// are added on the first lookup and dropped when a registration makes the
+	// lookup ambiguous or binds the type's name.
+	private volatile ConcurrentMap<Class<?>, Resource> typeIndex;
+	// resources by each of their super classes and interfaces, appended under
+	// lock on registration
+	private volatile ConcurrentMap<Class<?>, Candidates> assignableIndex;
+	// incremented on every registration, used to discard typeIndex entries
+	// resolved concurrently with a registration
+	private volatile int registrations;
+	// set by freeze, replaces the maps above
+	private volatile FrozenRegistry frozen;
+	// the dependency order of the beans when created by a ContainerTemplate,
+	// dropped on registration
+	private volatile Resource[] startOrder;
+	// resources by their slot, replaced by a larger copy under lock when full
+	private volatile Resource[] slots = new Resource[16];
+	// guarded by lock
+	private int slotCount;
 	// used to maintain resources that required shutdown as well as the order of
 	// shutdown
-	private State state;
+	private volatile State state;
 	private final List<Resource> startedResources;
+	// guards registration, state transitions and startedResources. Bean
+	// construction is coordinated with the per resource construction lock.
 	private final Object lock = new Object();
+	// threads blocked on a construction lock, used to detect lock cycles
+	private final ConcurrentMap<Thread, Resource> waitingFor;
+	private static final long LOCK_CYCLE_CHECK_MILLIS = 50;
+	// set while startInWaves constructs beans without starting them
+	private final ThreadLocal<Boolean> startDeferred = new ThreadLocal<Boolean>();
+	// set while a BeanFactory creates a bean with metrics enabled, the beans
+	// it obtains are internal wiring and not counted as requests
+	private final ThreadLocal<Boolean> factoryWiring = new ThreadLocal<Boolean>();
+	// prototype and pooled resources being instantiated by the current thread
+	private final ThreadLocal<Set<Resource>> instancesInCreation = new ThreadLocal<Set<Resource>>();
+	// resolves the edges of the dependency graphs within this container
+	private final DependencyGraph.Resolver graphResolver = new DependencyGraph.Resolver() {
+		public Resource resolve(final Dependency dependency) {
+			return resolveQuietly(dependency);
+		}
+	};
+	// records construction timings when set
+	private volatile StartupProfiler profiler;
+	private volatile ContainerMetrics metrics;
+	private volatile LifecycleTracer tracer;
+	private volatile AccessorStrategy accessorStrategy;
+	private static final int DEFAULT_POOL_SIZE = 8;
+	private static final long DEFAULT_MAX_IDLE_MILLIS = 60000;
 
 	public ApplicationBeanManager() {
+		this(null);
+	}
+
+	private ApplicationBeanManager(final ApplicationBeanManager parent) {
+		this.parent = parent;
+		accessorStrategy = parent == null ? Accessors.getDefaultStrategy()
+				: parent.accessorStrategy;
 		resources = new ConcurrentHashMap<String, Resource>();
+		typeIndex = new ConcurrentHashMap<Class<?>, Resource>();
+		assignableIndex = new ConcurrentHashMap<Class<?>, Candidates>();
 		startedResources = new LinkedList<Resource>();
+		waitingFor = new ConcurrentHashMap<Thread, Resource>();
 		state = State.Running;
 		bindObject(this, ResourceManager.class);
 	}
 
 	public void bind(final Class<?> componentType) {
-		Bean bean = componentType.getAnnotation(Bean.class);
-		if (bean != null && bean.name() != null && bean.name().length > 0)
-			bind(componentType, bean.name());
-		else
-			bind(componentType, componentType);
+		bind(componentType, namesOf(componentType));
 	}
 
 	public void bind(final Class<?> componentType,
@@ -71,7 +144,7 @@ public class ApplicationBeanManager implements ResourceManager {
 		bind(componentType, interfaceType.getName(), additionalNames);
 	}
 
-	private void assertValidTypes(Class<?> componentType,
+	static void assertValidTypes(Class<?> componentType,
 			Class<?> interfaceType, Class<?>[] additionalTypes) {
 		if (!interfaceType.isAssignableFrom(componentType))
 			throw new IllegalArgumentException("Componenet type ["
@@ -95,8 +168,113 @@ public class ApplicationBeanManager implements ResourceManager {
 	}
 
 	private void bind(final Class<?> componentType, final String[] names) {
-		final Resource bean = new Resource(componentType, names);
-		register(bean);
+		bind(componentType, names, scopeOf(componentType));
+	}
+
+	public void bind(final Class<?> componentType, final Scope scope) {
+		bind(componentType, namesOf(componentType), scope);
+	}
+
+	private void bind(final Class<?> componentType, final String[] names,
+			final Scope scope) {
+		register(newResource(componentType, null, scope, names));
+	}
+
+	public void bindPool(final Class<?> componentType, final int maxSize,
+			final long maxIdle, final TimeUnit unit) {
+		final Resource resource = new Resource(componentType, null,
+				Scope.Pooled, namesOf(componentType));
+		resource.setPool(createPool(resource, resource.getType(), maxSize,
+				unit.toNanos(maxIdle)));
+		register(resource);
+	}
+
+	public <T> void bindFactory(final Class<T> componentType,
+			final BeanFactory<? extends T> factory) {
+		if (factory == null)
+			throw new ResourceException("Cannot bind null factory");
+		register(newResource(componentType, factory, scopeOf(componentType),
+				namesOf(componentType)));
+	}
+
+	public <T> void bindFactory(final Class<T> componentType,
+			final BeanFactory<? extends T> factory, final Scope scope,
+			final String name, final String... additionalNames) {
+		if (factory == null)
+			throw new ResourceException("Cannot bind null factory");
+		if (scope == null)
+			throw new ResourceException("Cannot bind with null scope");
+		register(newResource(componentType, factory, scope,
+				join(name, additionalNames)));
+	}
+
+	String[] namesOf(final Class<?> componentType) {
+		final Bean bean = componentType.getAnnotation(Bean.class);
+		if (bean != null && bean.name() != null && bean.name().length > 0)
+			return bean.name();
+		return new String[] { componentType.getName() };
+	}
+
+	Scope scopeOf(final Class<?> componentType) {
+		final Bean bean = componentType.getAnnotation(Bean.class);
+		return bean == null ? Scope.Singleton : bean.scope();
+	}
+
+	/**
+	 * Create a resource, with a pool configured from the {@link Bean}
+	 * annotation if the resource is pooled.
+	 */
+	Resource newResource(final Class<?> componentType,
+			final BeanFactory<?> factory, final Scope scope,
+			final String[] names) {
+		if (scope != Scope.Pooled)
+			return newResource(componentType, factory, scope, names, 0, 0);
+		final Bean bean = componentType.getAnnotation(Bean.class);
+		final int maxSize = bean == null ? DEFAULT_POOL_SIZE : bean.poolSize();
+		final long maxIdleMillis = bean == null ? DEFAULT_MAX_IDLE_MILLIS
+				: bean.maxIdleMillis();
+		return newResource(componentType, factory, scope, names, maxSize,
+				TimeUnit.MILLISECONDS.toNanos(maxIdleMillis));
+	}
+
+	/**
+	 * Create a resource with the given pool configuration, which is ignored
+	 * unless the resource is pooled.
+	 */
+	Resource newResource(final Class<?> componentType,
+			final BeanFactory<?> factory, final Scope scope,
+			final String[] names, final int maxPoolSize,
+			final long maxIdleNanos) {
+		final Resource resource = new Resource(componentType, factory, scope,
+				names);
+		if (scope == Scope.Pooled)
+			resource.setPool(createPool(resource, componentType, maxPoolSize,
+					maxIdleNanos));
+		else if (scope == Scope.Thread)
+			resource.setThreadScope(createThreadScope(resource, componentType));
+		return resource;
+	}
+
+	private <T> ThreadScope<T> createThreadScope(final Resource resource,
+			final Class<T> componentType) {
+		final String name = resource.getNames().get(0);
+		return new ThreadScope<T>(name, new Provider<T>() {
+			public T get() {
+				return newInstance(name, resource, componentType);
+			}
+		});
+	}
+
+	private <T> Pool<T> createPool(final Resource resource,
+			final Class<T> componentType, final int maxSize,
+			final long maxIdleNanos) {
+		final String name = resource.getNames().get(0);
+		return new Pool<T>(name, componentType, maxSize, maxIdleNanos,
+				new Provider<T>() {
+					public T get() {
+						return newInstance(name, resource, componentType);
+					}
+				});
 	}
 
 	public void bindObject(final Object component) {
@@ -111,10 +289,7 @@ public class ApplicationBeanManager implements ResourceManager {
 			throw new ResourceException("Cannot bind null componenent");
 		final String[] names = join(name, additionalNames);
 
-		final Resource resource = new Resource(component.getClass(), names);
-		resource.setObject(component);
-
-		register(resource);
+		register(Resource.forObject(component, names));
 	}
 
 	public void bindObject(final Object component,
@@ -124,81 +299,733 @@ public class ApplicationBeanManager implements ResourceManager {
 		bindObject(component, interfaceType.getName(), names);
 	}
 
-	private String[] join(final String name, final String... additionalNames) {
+	static String[] join(final String name, final String... additionalNames) {
 		final String[] names = new String[1 + additionalNames.length];
 		names[0] = name;
 		System.arraycopy(additionalNames, 0, names, 1, additionalNames.length);
 		return names;
 	}
 
-	private String[] toNames(final Class<?>... additionalTypes) {
+	static String[] toNames(final Class<?>... additionalTypes) {
 		final String[] additionalNames = new String[additionalTypes.length];
 		for (int i = 0; i < additionalTypes.length; ++i)
 			additionalNames[i] = additionalTypes[i].getName();
 		return additionalNames;
 	}
 
+	/**
+	 * Register a single resource, without the staging maps of a batch.
+	 */
 	private void register(final Resource resource) {
+		final Set<Class<?>> types = assignableTypes(resource.getType());
 		synchronized (lock) {
-			if (state != State.Running)
-				throw new ResourceException(
-						"Binding is not allowed when the ResourceManager is in ["
-								+ this.state + "] state");
+			assertBindable();
+			for (final String name : resource.getNames())
+				assertNameFree(name, resource);
+			assignSlots(Collections.singletonList(resource));
+			for (final String name : resource.getNames())
+				resources.put(name, resource);
+			for (final Class<?> type : types)
+				candidatesOf(type, 1).add(resource);
+			registered(resource.getNames(), types);
+		}
+	}
 
+	/**
+	 * Register the resources all together under the lock, or none of them if
+	 * a name is used twice or is already registered.
+	 * 
+	 * The registration is atomic for other registrations, not for readers:
+	 * the names are published one after the other, so a concurrent lookup
+	 * may find some beans of the batch and miss others until the method
+	 * returns.
+	 */
+	void registerAll(final List<Resource> batch) {
+		final Map<String, Resource> names = new HashMap<String, Resource>();
+		final Map<Class<?>, List<Resource>> assignables = new HashMap<Class<?>, List<Resource>>();
+		for (final Resource resource : batch) {
 			for (final String name : resource.getNames()) {
-				final Object putted = resources.putIfAbsent(name, resource);
-				if (putted != null && putted != resource) {
+				final Resource existing = names.put(name, resource);
+				if (existing != null && existing != resource)
 					throw new ResourceException("Component type ["
 							+ resource.getType() + "] already exists.");
+			}
+			for (final Class<?> type : assignableTypes(resource.getType())) {
+				List<Resource> candidates = assignables.get(type);
+				if (candidates == null) {
+					candidates = new ArrayList<Resource>(1);
+					assignables.put(type, candidates);
 				}
+				candidates.add(resource);
 			}
 		}
+		publish(batch, names, assignables);
+	}
+
+	/**
+	 * Register a batch whose names are known to be distinct, failing if one of
+	 * them is already registered.
+	 */
+	void publish(final List<Resource> batch, final Map<String, Resource> names,
+			final Map<Class<?>, List<Resource>> assignables) {
+		synchronized (lock) {
+			assertBindable();
+			for (final Map.Entry<String, Resource> entry : names.entrySet())
+				assertNameFree(entry.getKey(), entry.getValue());
+			assignSlots(batch);
+			resources.putAll(names);
+			for (final Map.Entry<Class<?>, List<Resource>> entry : assignables
+					.entrySet()) {
+				final List<Resource> added = entry.getValue();
+				final Candidates candidates = candidatesOf(entry.getKey(),
+						added.size());
+				for (final Resource resource : added)
+					candidates.add(resource);
+			}
+			registered(names.keySet(), assignables.keySet());
+		}
+	}
+
+	private void assertBindable() {
+		if (state != State.Running)
+			throw new ResourceException(
+					"Binding is not allowed when the ResourceManager is in ["
+							+ this.state + "] state");
+	}
+
+	private void assertNameFree(final String name, final Resource resource) {
+		final Resource existing = resources.get(name);
+		if (existing != null && existing != resource)
+			throw new ResourceException("Component type ["
+					+ resource.getType() + "] already exists.");
+	}
+
+	/**
+	 * The candidates of a type, created with room for <code>capacity</code>
+	 * resources if none is registered. Must be called holding the lock.
+	 */
+	private Candidates candidatesOf(final Class<?> type, final int capacity) {
+		Candidates candidates = assignableIndex.get(type);
+		if (candidates == null) {
+			candidates = new Candidates(capacity);
+			assignableIndex.put(type, candidates);
+		}
+		return candidates;
+	}
+
+	/**
+	 * Invalidate what a registration changes, must be called holding the
+	 * lock.
+	 */
+	private void registered(final Collection<String> names,
+			final Collection<Class<?>> types) {
+		++registrations;
+		invalidateTypeIndex(names, types);
+		startOrder = null;
+	}
+
+	/**
+	 * Drop the cached lookups a registration may change: types with a new
+	 * candidate may have become ambiguous, and types whose name was bound
+	 * resolve to the bean bound to it. Must be called holding the lock.
+	 */
+	private void invalidateTypeIndex(final Collection<String> names,
+			final Collection<Class<?>> types) {
+		for (final Class<?> type : types)
+			typeIndex.remove(type);
+		if (typeIndex.isEmpty())
+			return;
+		for (final String name : names) {
+			boolean typeName = false;
+			for (final Class<?> type : types)
+				typeName |= type.getName().equals(name);
+			// bound to a name other than one of its types, rarely a class name
+			if (!typeName)
+				for (final Class<?> cached : typeIndex.keySet())
+					if (cached.getName().equals(name))
+						typeIndex.remove(cached);
+		}
+	}
+
+	/**
+	 * Set the order in which {@link #startAll()} constructs the beans, instead
+	 * of computing it from the dependency graph. Set by
+	 * {@link ContainerTemplate} which compiled the graph already.
+	 */
+	void setStartOrder(final Resource[] order) {
+		startOrder = order;
+	}
+
+	/**
+	 * Give each resource the next slot, must be called holding the lock.
+	 */
+	private void assignSlots(final List<Resource> batch) {
+		Resource[] table = slots;
+		if (slotCount + batch.size() > table.length)
+			table = Arrays.copyOf(table,
+					Math.max(table.length * 2, slotCount + batch.size()));
+		for (final Resource resource : batch) {
+			if (resource.getSlot() >= 0)
+				continue;
+			resource.setContainer(this);
+			resource.setSlot(slotCount);
+			table[slotCount++] = resource;
+		}
+		slots = table;
+	}
+
+	/**
+	 * @return the type with all its super classes and interfaces, except
+	 *         Object.
+	 */
+	static Set<Class<?>> assignableTypes(final Class<?> type) {
+		final Set<Class<?>> types = new LinkedHashSet<Class<?>>();
+		final LinkedList<Class<?>> toVisit = new LinkedList<Class<?>>();
+		toVisit.add(type);
+		while (!toVisit.isEmpty()) {
+			final Class<?> current = toVisit.removeFirst();
+			if (current == Object.class || !types.add(current))
+				continue;
+			if (current.getSuperclass() != null)
+				toVisit.add(current.getSuperclass());
+			toVisit.addAll(Arrays.asList(current.getInterfaces()));
+		}
+		return types;
 	}
 
 	public <T> T getBean(final Class<T> componentType) {
-		return getBean(componentType.getName(), componentType);
+		if (logger.isDebugEnabled())
+			logger.debug("Obtaining bean with type [" + componentType + "]");
+		final ContainerMetrics metrics = requestMetrics();
+		final long start = metrics == null ? 0 : System.nanoTime();
+		final T bean = getBean(componentType.getName(),
+				lookup(componentType), componentType);
+		if (metrics != null)
+			metrics.request(componentType.getName(), start);
+		if (logger.isDebugEnabled())
+			logger.debug("Returning bean [" + bean.getClass() + "]");
+		return bean;
 	}
 
 	public <T> T getBean(final String name, final Class<T> componentType) {
 		if (logger.isDebugEnabled())
 			logger.debug("Obtaining bean with name [" + name + "] and type ["
 					+ componentType + "]");
-		final T bean = getBeanByName(name, componentType);
+		final ContainerMetrics metrics = requestMetrics();
+		final long start = metrics == null ? 0 : System.nanoTime();
+		final T bean = getBean(name, resource(name), componentType);
+		if (metrics != null)
+			metrics.request(name, start);
 		if (logger.isDebugEnabled())
 			logger.debug("Returning bean [" + bean.getClass() + "]");
 		return bean;
 	}
 
-	private <T> T getBeanByName(final String name, final Class<T> componentType) {
-		synchronized (lock) {
-			if (state == State.Shutdown)
-				throw new ResourceException(
-						"Obtaining bean is not allowed when the ResourceManager is in ["
-								+ this.state + "] state");
+	public <T> BeanKey<T> getKey(final Class<T> componentType) {
+		return getKey(componentType.getName(), lookup(componentType),
+				componentType);
+	}
 
-			final Resource resource = resources.get(name);
-			if (resource == null) {
-				throw new ResourceException(
-						"Component with name ["
-								+ name
-								+ "] is not registerd. If an resource should be used for multiple name,"
-								+ " make sure the resource is binded to the desrire names");
+	public <T> BeanKey<T> getKey(final String name,
+			final Class<T> componentType) {
+		return getKey(name, resource(name), componentType);
+	}
+
+	private <T> BeanKey<T> getKey(final String name, final Resource resource,
+			final Class<T> componentType) {
+		if (resource == null)
+			throw new ResourceException("Component with name [" + name
+					+ "] is not registerd.");
+		if (!componentType.isAssignableFrom(resource.getType()))
+			throw new ResourceException("Bean [" + name + "] is of type ["
+					+ resource.getType() + "] not an instance of ["
+					+ componentType + "]");
+		return new BeanKey<T>(resource.getContainer(), name, componentType,
+				resource.getSlot());
+	}
+
+	public <T> T getBean(final BeanKey<T> key) {
+		// the request is recorded by the ancestor resolving the key
+		if (key.getOwner() != this)
+			return getParentBean(key);
+		final ContainerMetrics metrics = requestMetrics();
+		if (metrics == null)
+			return getKeyedBean(key);
+		final long start = System.nanoTime();
+		final T bean = getKeyedBean(key);
+		metrics.request(key.getName(), start);
+		return bean;
+	}
+
+	/**
+	 * The metrics recording a request for a bean, or <code>null</code> if
+	 * disabled or the request is made by a factory creating a bean.
+	 */
+	private ContainerMetrics requestMetrics() {
+		final ContainerMetrics metrics = this.metrics;
+		if (metrics == null || factoryWiring.get() != null)
+			return null;
+		return metrics;
+	}
+
+	private <T> T getKeyedBean(final BeanKey<T> key) {
+		if (key.getOwner() != this)
+			return getParentBean(key);
+		final Resource resource = slots[key.getSlot()];
+		if (resource.isStarted() && state != State.Shutdown) {
+			// the type was checked when creating the key
+			@SuppressWarnings("unchecked")
+			final T bean = (T) resource.getObject();
+			return bean;
+		}
+		return getBean(key.getName(), resource, key.getType());
+	}
+
+	/**
+	 * Obtain the bean of a key created for a bean of an ancestor container.
+	 */
+	private <T> T getParentBean(final BeanKey<T> key) {
+		for (ApplicationBeanManager ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+			if (key.getOwner() == ancestor) {
+				if (state == State.Shutdown)
+					throw new ResourceException(
+							"Obtaining bean is not allowed when the ResourceManager is in ["
+									+ this.state + "] state");
+				return ancestor.getBean(key);
 			}
+		}
+		throw new ResourceException("[" + key
+				+ "] was not created by this ResourceManager");
+	}
+
+	public <T> T findBean(final Class<T> componentType) {
+		final Resource resource;
+		try {
+			resource = lookup(componentType);
+		} catch (final ResourceException e) {
+			// several beans are assignable to the type
+			return null;
+		}
+		return findBean(componentType.getName(), resource, componentType);
+	}
+
+	public <T> T findBean(final String name, final Class<T> componentType) {
+		return findBean(name, resource(name), componentType);
+	}
+
+	/**
+	 * Same as getBean but a resource that cannot be obtained by lookup, a
+	 * missing, pooled or shut down one or one of another type, is answered
+	 * with <code>null</code> instead of an exception.
+	 */
+	private <T> T findBean(final String name, final Resource resource,
+			final Class<T> componentType) {
+		if (resource == null
+				|| !componentType.isAssignableFrom(resource.getType())
+				|| resource.getScope() == Scope.Pooled
+				|| state == State.Shutdown
+				|| resource.getContainer().state == State.Shutdown)
+			return null;
+		return getBean(name, resource, componentType);
+	}
 
-			if (resource.getObject() != null) {
-				if (!componentType.isAssignableFrom(resource.getObject()
-						.getClass()))
-					throw new ResourceException("Bean [" + name
-							+ " is of type [" + resource.getObject().getClass()
-							+ "] not an instance of [" + componentType + "]");
-				@SuppressWarnings("unchecked")
-				final T typped = (T) resource.getObject();
-				startResouceIfNeeded(resource);
-				return typped;
+	public boolean containsBean(final Class<?> componentType) {
+		return containsOwnBean(componentType)
+				|| (parent != null && parent.containsBean(componentType));
+	}
+
+	private boolean containsOwnBean(final Class<?> componentType) {
+		FrozenRegistry registry = frozen;
+		if (registry == null) {
+			if (typeIndex.containsKey(componentType)
+					|| resources.containsKey(componentType.getName())
+					|| assignableIndex.containsKey(componentType))
+				return true;
+			// a miss may be due to a concurrent freeze emptying the maps
+			registry = frozen;
+			if (registry == null)
+				return false;
+		}
+		return registry.contains(componentType);
+	}
+
+	public boolean containsBean(final String name) {
+		return resource(name) != null;
+	}
+
+	/**
+	 * Find the resource registered for a type in this container, or else in
+	 * the ancestors.
+	 */
+	private Resource lookup(final Class<?> componentType) {
+		final Resource resource = lookupOwn(componentType);
+		if (resource == null && parent != null)
+			return parent.lookup(componentType);
+		return resource;
+	}
+
+	/**
+	 * Find the resource registered for a type with a single identity hash
+	 * lookup once the type was resolved.
+	 */
+	private Resource lookupOwn(final Class<?> componentType) {
+		final FrozenRegistry registry = frozen;
+		if (registry != null)
+			return registry.get(componentType);
+		Resource resource = typeIndex.get(componentType);
+		if (resource == null) {
+			final int version = registrations;
+			resource = resolve(componentType);
+			if (resource != null) {
+				typeIndex.putIfAbsent(componentType, resource);
+				// a registration may have cleared the index while resolving
+				if (version != registrations)
+					typeIndex.remove(componentType, resource);
+			} else if (frozen != null) {
+				// the maps may have been cleared by a concurrent freeze
+				return frozen.get(componentType);
+			}
+		}
+		return resource;
+	}
+
+	/**
+	 * Find the resource registered with a name in this container, or else in
+	 * the ancestors.
+	 */
+	private Resource resource(final String name) {
+		final Resource resource = ownResource(name);
+		if (resource == null && parent != null)
+			return parent.resource(name);
+		return resource;
+	}
+
+	private Resource ownResource(final String name) {
+		final FrozenRegistry registry = frozen;
+		if (registry != null)
+			return registry.get(name);
+		final Resource resource = resources.get(name);
+		if (resource == null && frozen != null)
+			return frozen.get(name);
+		return resource;
+	}
+
+	/**
+	 * The distinct registered resources.
+	 */
+	private Collection<Resource> allResources() {
+		// slots are filled densely, frozen or not
+		final Resource[] table = slots;
+		int count = 0;
+		while (count < table.length && table[count] != null)
+			++count;
+		return Arrays.asList(table).subList(0, count);
+	}
+
+	/**
+	 * Resolve a type to the bean bound to the type's name, or else to the only
+	 * bean assignable to the type.
+	 * 
+	 * @throws ResourceException if several beans are assignable to the type.
+	 */
+	private Resource resolve(final Class<?> componentType) {
+		final Resource resource = resources.get(componentType.getName());
+		if (resource != null)
+			return resource;
+		final Candidates candidates = assignableIndex.get(componentType);
+		// candidates are published before their first resource is added
+		if (candidates == null || candidates.size() == 0)
+			return null;
+		if (candidates.size() > 1) {
+			// the type's name may be missing from a map emptied by a
+			// concurrent freeze
+			final FrozenRegistry registry = frozen;
+			if (registry != null)
+				return registry.get(componentType);
+			throw ambiguous(componentType, candidates.toArray());
+		}
+		return candidates.first();
+	}
+
+	static ResourceException ambiguous(final Class<?> componentType,
+			final Resource[] candidates) {
+		final List<String> names = new ArrayList<String>(candidates.length);
+		for (final Resource candidate : candidates)
+			names.add(candidate.getNames().get(0));
+		return new ResourceException("Multiple beans " + names
+				+ " are assignable to [" + componentType.getName()
+				+ "]. Bind the bean to use with the name ["
+				+ componentType.getName() + "]");
+	}
+
+	/**
+	 * @return the resource satisfying the dependency or <code>null</code> if
+	 *         none or several do.
+	 */
+	private Resource resolveQuietly(final Dependency dependency) {
+		if (dependency.isNamed())
+			return resource(dependency.getName());
+		try {
+			return lookup(dependency.getType());
+		} catch (final ResourceException e) {
+			return null;
+		}
+	}
+
+	private <T> T getBean(final String name, final Resource resource,
+			final Class<T> componentType) {
+		// fast path: a started resource never changes, so it can be handed out
+		// without taking the lock
+		if (resource != null && resource.isStarted()
+				&& state != State.Shutdown
+				&& resource.getContainer().state != State.Shutdown)
+			return castBean(name, resource, componentType);
+
+		if (state == State.Shutdown)
+			throw new ResourceException(
+					"Obtaining bean is not allowed when the ResourceManager is in ["
+							+ this.state + "] state");
+
+		if (resource == null) {
+			throw new ResourceException(
+					"Component with name ["
+							+ name
+							+ "] is not registerd. If an resource should be used for multiple name,"
+							+ " make sure the resource is binded to the desrire names");
+		}
+
+		// beans inherited from an ancestor are constructed and injected there
+		if (resource.getContainer() != this)
+			return resource.getContainer().getBean(name, resource,
+					componentType);
+
+		if (resource.getScope() == Scope.Thread)
+			return castBean(name, resource.getThreadScope().get(),
+					componentType);
+		if (resource.getScope() == Scope.Prototype)
+			return newInstance(name, resource, componentType);
+		if (resource.getScope() == Scope.Pooled)
+			throw new ResourceException("Bean [" + name
+					+ "] is pooled, it must be borrowed from its pool");
+
+		try {
+			if (resource.getObject() == null)
+				constructDependencies(resource);
+			lockForConstruction(name, resource);
+			try {
+				if (resource.getObject() != null) {
+					final T typped = castBean(name, resource, componentType);
+					if (!isStartDeferred())
+						startResouceIfNeeded(resource);
+					return typped;
+				}
+
+				return this.contructObject(name, resource, componentType);
+			} finally {
+				unlockForConstruction(resource);
+			}
+		} finally {
+			discardPreconstructed();
+		}
+	}
+
+	/**
+	 * Construct the singletons <code>resource</code> transitively depends on,
+	 * dependencies first, walking the graph with an explicit stack. When
+	 * <code>resource</code> is then constructed, its dependencies are handed
+	 * out without constructing them in nested calls, so the depth of the call
+	 * stack does not grow with the length of the dependency chains.
+	 * 
+	 * Prototype beans are created per injection, their dependencies are
+	 * constructed but they are not. Beans of an ancestor are left to the
+	 * ancestor.
+	 * 
+	 * @throws ResourceException listing the path of the cycle if
+	 *             <code>resource</code> depends on itself.
+	 */
+	private void constructDependencies(final Resource resource) {
+		if (!hasDependencyToConstruct(resource))
+			return;
+		final StartupProfiler profiler = this.profiler;
+		if (profiler == null) {
+			walkDependencies(resource);
+			return;
+		}
+		final long start = profiler.beginDependency();
+		boolean walked = false;
+		try {
+			walkDependencies(resource);
+			walked = true;
+		} finally {
+			if (walked)
+				profiler.preconstructed(resource.getNames().get(0), start);
+			else
+				profiler.dependency(start);
+		}
+	}
+
+	/**
+	 * Drop the profiler frame left by {@link #constructDependencies(Resource)}
+	 * if the bean was not constructed after all, e.g. because another thread
+	 * constructed it meanwhile or a cycle was detected.
+	 */
+	private void discardPreconstructed() {
+		final StartupProfiler profiler = this.profiler;
+		if (profiler != null)
+			profiler.discardPreconstructed();
+	}
+
+	private void walkDependencies(final Resource resource) {
+		final Deque<Resource> path = new ArrayDeque<Resource>();
+		final Deque<Iterator<Dependency>> pending = new ArrayDeque<Iterator<Dependency>>();
+		final Set<Resource> onPath = Collections
+				.newSetFromMap(new IdentityHashMap<Resource, Boolean>());
+		final Set<Resource> visited = Collections
+				.newSetFromMap(new IdentityHashMap<Resource, Boolean>());
+		path.push(resource);
+		onPath.add(resource);
+		pending.push(DependencyGraph.dependenciesOf(resource).iterator());
+		while (!path.isEmpty()) {
+			final Iterator<Dependency> dependencies = pending.peek();
+			if (!dependencies.hasNext()) {
+				pending.pop();
+				final Resource constructed = path.pop();
+				onPath.remove(constructed);
+				visited.add(constructed);
+				if (constructed != resource
+						&& constructed.getScope() == Scope.Singleton
+						&& constructed.getObject() == null)
+					getBean(constructed.getNames().get(0), constructed,
+							Object.class);
+				continue;
 			}
+			final Resource target = resolveQuietly(dependencies.next());
+			if (!needsConstruction(target) || visited.contains(target))
+				continue;
+			if (onPath.contains(target))
+				throw new ResourceException("Cyclic dependency detected: "
+						+ cyclePath(path, target));
+			path.push(target);
+			onPath.add(target);
+			pending.push(DependencyGraph.dependenciesOf(target).iterator());
+		}
+	}
+
+	/**
+	 * Whether any direct dependency of <code>resource</code> has to be walked
+	 * by {@link #constructDependencies(Resource)}. Checked without allocating
+	 * since the dependencies are usually constructed already, e.g. for every
+	 * further prototype instance.
+	 */
+	private boolean hasDependencyToConstruct(final Resource resource) {
+		final List<Dependency> dependencies = DependencyGraph
+				.dependenciesOf(resource);
+		for (int i = 0; i < dependencies.size(); ++i)
+			if (needsConstruction(resolveQuietly(dependencies.get(i))))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Whether <code>target</code> is constructed, or creates instances, in
+	 * this container and may still have dependencies to construct.
+	 * Unresolved dependencies fail when injected, with their message.
+	 */
+	private boolean needsConstruction(final Resource target) {
+		return target != null
+				&& target.getContainer() == this
+				&& target.getScope() != Scope.Pooled
+				&& (target.getScope() != Scope.Singleton || target.getObject() == null);
+	}
 
-			return this.contructObject(name, resource, componentType);
+	/**
+	 * The names along <code>path</code> from <code>target</code> back to
+	 * itself, e.g. <code>[a] -> [b] -> [a]</code>.
+	 */
+	private static String cyclePath(final Deque<Resource> path,
+			final Resource target) {
+		final StringBuilder cycle = new StringBuilder();
+		final Iterator<Resource> outermostFirst = path.descendingIterator();
+		boolean inCycle = false;
+		while (outermostFirst.hasNext()) {
+			final Resource step = outermostFirst.next();
+			inCycle |= step == target;
+			if (inCycle)
+				cycle.append('[').append(step.getNames().get(0)).append("] -> ");
 		}
+		return cycle.append('[').append(target.getNames().get(0)).append(']')
+				.toString();
+	}
+
+	private void lockForConstruction(final String name, final Resource resource) {
+		final ReentrantLock constructionLock = resource.getConstructionLock();
+		if (!constructionLock.tryLock()) {
+			final ContainerMetrics metrics = this.metrics;
+			final long start = metrics == null ? 0 : System.nanoTime();
+			final Thread current = Thread.currentThread();
+			waitingFor.put(current, resource);
+			try {
+				while (!constructionLock.tryLock(LOCK_CYCLE_CHECK_MILLIS,
+						TimeUnit.MILLISECONDS))
+					assertNoLockCycle(name, resource, current);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ResourceException("Interrupted while waiting for bean ["
+						+ name + "] to be constructed", e);
+			} finally {
+				waitingFor.remove(current);
+				if (metrics != null)
+					metrics.lockWait(start);
+			}
+		}
+		if (constructionLock.getHoldCount() == 1)
+			resource.setOwner(Thread.currentThread());
+	}
+
+	private void unlockForConstruction(final Resource resource) {
+		final ReentrantLock constructionLock = resource.getConstructionLock();
+		if (constructionLock.getHoldCount() == 1)
+			resource.setOwner(null);
+		constructionLock.unlock();
+	}
+
+	/**
+	 * Follows the chain of lock owners starting at <code>resource</code>. If the
+	 * chain leads back to the current thread, two threads are constructing beans
+	 * that depend on each other and neither can make progress.
+	 */
+	private void assertNoLockCycle(final String name, final Resource resource,
+			final Thread current) {
+		Resource blocking = resource;
+		for (int i = 0; blocking != null && i <= waitingFor.size(); ++i) {
+			final Thread owner = blocking.getOwner();
+			if (owner == null)
+				return;
+			if (owner == current)
+				throw new ResourceException(
+						"Component with name ["
+								+ name
+								+ "] is under construction by another thread waiting on this thread."
+								+ " This indicates a cycular dependency is not supported in this"
+								+ " resource manager implementation");
+			blocking = waitingFor.get(owner);
+		}
+	}
+
+	private <T> T castBean(final String name, final Resource resource,
+			final Class<T> componentType) {
+		return castBean(name, resource.getObject(), componentType);
+	}
+
+	private <T> T castBean(final String name, final Object object,
+			final Class<T> componentType) {
+		if (!componentType.isInstance(object))
+			throw new ResourceException("Bean [" + name + " is of type ["
+					+ object.getClass() + "] not an instance of ["
+					+ componentType + "]");
+		@SuppressWarnings("unchecked")
+		final T typped = (T) object;
+		return typped;
 	}
 
 	private <T> T contructObject(final String name, final Resource resource,
@@ -209,7 +1036,8 @@ public class ApplicationBeanManager implements ResourceManager {
 					+ resource.getType() + "] not an instance of ["
 					+ componentType + "]");
 
-		if (resource.isUnderConstruction()) {
+		final Thread current = Thread.currentThread();
+		if (resource.isUnderConstructionBy(current)) {
 			throw new ResourceException(
 					"Component with name ["
 							+ name
@@ -222,77 +1050,303 @@ public class ApplicationBeanManager implements ResourceManager {
 			logger.debug("Creating bean with name [" + name + "] and type ["
 					+ resource.getType() + "]");
 
-		resource.setUnderConstruction(true);
+		resource.setUnderConstruction(current);
+		final T object;
+		try {
+			object = createInstance(name, resource, componentType);
+			resource.setObject(object);
+		} finally {
+			resource.setUnderConstruction(null);
+		}
 
-		@SuppressWarnings("unchecked")
-		final Constructor<T> constructor = (Constructor<T>) getConstructorFor(resource);
-		final T object = instantiateBean(name, constructor);
-		performFieldInjection(object, object.getClass());
-		performMethodInjection(object, object.getClass());
-		resource.setObject(object);
-		resource.setUnderConstruction(false);
-
-		startResouceIfNeeded(resource);
+		if (!isStartDeferred())
+			startResouceIfNeeded(resource);
 		return object;
 	}
 
-	private void performFieldInjection(Object object, Class<?> targetType) {
-		if (targetType == Object.class)
-			return;
+	/**
+	 * Create and start a new instance of a prototype or pooled resource. The
+	 * instance is not tracked, so it is not shutdown with the ResourceManager.
+	 */
+	private <T> T newInstance(final String name, final Resource resource,
+			final Class<T> componentType) {
+		if (!componentType.isAssignableFrom(resource.getType()))
+			throw new ResourceException("Bean [" + name + "] is of type ["
+					+ resource.getType() + "] not an instance of ["
+					+ componentType + "]");
+		if (state == State.Shutdown)
+			throw new ResourceException(
+					"Obtaining bean is not allowed when the ResourceManager is in ["
+							+ this.state + "] state");
+
+		final T object;
+		try {
+			constructDependencies(resource);
+			object = createTracked(name, resource, componentType);
+		} finally {
+			discardPreconstructed();
+		}
 
-		for (Field field : targetType.getDeclaredFields()) {
-			Inject inject = field.getAnnotation(Inject.class);
-			if (inject != null) {
-				Object bean = getBeanForInject(object.getClass(), inject,
-						field.getType());
-				setToField(field, object, bean);
+		startDependencies(resource);
+		if (object instanceof LifeCycle)
+			onStart(resource, (LifeCycle) object);
+		return object;
+	}
+
+	/**
+	 * Create an instance, rejecting a resource already being created by the
+	 * calling thread.
+	 */
+	private <T> T createTracked(final String name, final Resource resource,
+			final Class<T> componentType) {
+		Set<Resource> creating = instancesInCreation.get();
+		if (creating == null) {
+			creating = Collections
+					.newSetFromMap(new IdentityHashMap<Resource, Boolean>());
+			instancesInCreation.set(creating);
+		}
+		if (!creating.add(resource))
+			throw new ResourceException(
+					"Component with name ["
+							+ name
+							+ "] is currently under construction."
+							+ " This indicates a cycular dependency is not supported in this"
+							+ " resource manager implementation");
+
+		if (logger.isDebugEnabled())
+			logger.debug("Creating instance of " + resource.getScope()
+					+ " bean with name [" + name + "]");
+		try {
+			return createInstance(name, resource, componentType);
+		} finally {
+			creating.remove(resource);
+			if (creating.isEmpty())
+				instancesInCreation.remove();
+		}
+	}
+
+	/**
+	 * Create an object with the resource's factory, or else with the cached
+	 * injection plan of its type.
+	 */
+	private <T> T createInstance(final String name, final Resource resource,
+			final Class<T> componentType) {
+		final LifecycleTracer tracer = this.tracer;
+		if (tracer == null)
+			return profileInstance(name, resource, componentType);
+		final Object context = tracer.begin(
+				LifecycleTracer.Operation.Construction, resource.getNames()
+						.get(0), resource.getType());
+		Throwable failure = null;
+		try {
+			return profileInstance(name, resource, componentType);
+		} catch (final RuntimeException e) {
+			failure = e;
+			throw e;
+		} catch (final Error e) {
+			failure = e;
+			throw e;
+		} finally {
+			tracer.end(context, failure);
+		}
+	}
+
+	private <T> T profileInstance(final String name, final Resource resource,
+			final Class<T> componentType) {
+		final StartupProfiler profiler = this.profiler;
+		if (profiler == null)
+			return createInstance(name, resource, componentType, null);
+		profiler.enter(resource.getNames().get(0));
+		try {
+			return createInstance(name, resource, componentType, profiler);
+		} finally {
+			profiler.exit();
+		}
+	}
+
+	private <T> T createInstance(final String name, final Resource resource,
+			final Class<T> componentType, final StartupProfiler profiler) {
+		long start = profiler == null ? 0 : System.nanoTime();
+		if (resource.getFactory() != null) {
+			if (resource.getScope() == Scope.Singleton
+					|| resource.getScope() == Scope.Pooled)
+				assertNoThreadDependency(resource,
+						DependencyGraph.dependenciesOf(resource));
+			final T object = createWithFactory(name, resource, componentType);
+			if (profiler != null)
+				profiler.phase(StartupProfiler.Phase.Factory, start);
+			return object;
+		}
+		final InjectionPlan plan = InjectionPlan.forType(resource.getType(),
+				accessorStrategy);
+		if (resource.getScope() == Scope.Singleton
+				|| resource.getScope() == Scope.Pooled)
+			assertNoThreadDependency(resource, plan.getDirectDependencies());
+		@SuppressWarnings("unchecked")
+		final T object = (T) instantiateBean(name, plan);
+		if (profiler != null) {
+			profiler.phase(StartupProfiler.Phase.Instantiate, start);
+			start = System.nanoTime();
+		}
+		final LifecycleTracer tracer = this.tracer;
+		final Object context = tracer == null ? null : tracer.begin(
+				LifecycleTracer.Operation.Injection,
+				resource.getNames().get(0), resource.getType());
+		Throwable failure = null;
+		try {
+			performFieldInjection(object, plan);
+			if (profiler != null) {
+				profiler.phase(StartupProfiler.Phase.FieldInjection, start);
+				start = System.nanoTime();
 			}
+			performMethodInjection(object, plan);
+			if (profiler != null)
+				profiler.phase(StartupProfiler.Phase.MethodInjection, start);
+		} catch (final RuntimeException e) {
+			failure = e;
+			throw e;
+		} catch (final Error e) {
+			failure = e;
+			throw e;
+		} finally {
+			if (tracer != null)
+				tracer.end(context, failure);
 		}
+		return object;
+	}
 
-		performFieldInjection(object, targetType.getSuperclass());
+	/**
+	 * A singleton or pooled bean outlives the thread constructing it, a
+	 * thread bean injected directly would keep the instance of that thread.
+	 */
+	private void assertNoThreadDependency(final Resource resource,
+			final List<Dependency> dependencies) {
+		for (final Dependency dependency : dependencies) {
+			final Resource target = resolveQuietly(dependency);
+			if (target != null && target.getScope() == Scope.Thread)
+				throw new ResourceException("Bean ["
+						+ resource.getNames().get(0) + "] of scope ["
+						+ resource.getScope() + "] injects the thread bean ["
+						+ target.getNames().get(0)
+						+ "] directly, inject a Provider or a @Lazy proxy of it");
+		}
 	}
 
-	private void setToField(Field field, Object object, Object bean) {
-		if (!field.isAccessible())
-			field.setAccessible(true);
+	/**
+	 * Call {@link LifeCycle#onStart()}, recording its duration if profiling.
+	 */
+	private void onStart(final Resource resource, final LifeCycle bean) {
+		final LifecycleTracer tracer = this.tracer;
+		if (tracer == null) {
+			profileStart(resource, bean);
+			return;
+		}
+		final Object context = tracer.begin(LifecycleTracer.Operation.Start,
+				resource.getNames().get(0), resource.getType());
+		Throwable failure = null;
 		try {
-			field.set(object, bean);
-		} catch (Exception e) {
-			throw new ResourceException("Failed to set bean to field ["
-					+ field.getName() + "] for [" + object.getClass() + "]", e);
+			profileStart(resource, bean);
+		} catch (final RuntimeException e) {
+			failure = e;
+			throw e;
+		} catch (final Error e) {
+			failure = e;
+			throw e;
+		} finally {
+			tracer.end(context, failure);
 		}
 	}
 
-	private void performMethodInjection(Object object, Class<?> targetType) {
-		if (targetType == Object.class)
+	private void profileStart(final Resource resource, final LifeCycle bean) {
+		final StartupProfiler profiler = this.profiler;
+		if (profiler == null) {
+			bean.onStart();
 			return;
+		}
+		final long start = System.nanoTime();
+		try {
+			bean.onStart();
+		} finally {
+			profiler.started(resource.getNames().get(0), start);
+		}
+	}
 
-		for (Method method : targetType.getDeclaredMethods()) {
-			Inject inject = method.getAnnotation(Inject.class);
-			if (inject != null) {
-				final Class<?> declaringClass = method.getDeclaringClass();
-				final Annotation[][] annotations = method
-						.getParameterAnnotations();
-				final Class<?>[] argumentTypes = method.getParameterTypes();
+	private boolean isStartDeferred() {
+		return startDeferred.get() != null;
+	}
 
-				final Object[] arguments = getBeansForInject(declaringClass,
-						annotations, argumentTypes);
+	/**
+	 * Create the bean with its factory, reporting failures like
+	 * {@link #instantiateBean(String, InjectionPlan)}: a bean the factory
+	 * cannot obtain as an unsatisfied dependency, anything else the factory
+	 * throws as an instantiation error.
+	 */
+	private <T> T createWithFactory(final String name, final Resource resource,
+			final Class<T> componentType) {
+		final Object object;
+		try {
+			object = callFactory(resource);
+		} catch (final ResourceException e) {
+			throw new UnsatisfiedDependencyException(
+					"Unable to satisfy dependency of bean [" + name
+							+ "]. Factory failed to obtain a bean", e);
+		} catch (final RuntimeException e) {
+			throw new ResourceException("Error intantiating bean [" + name
+					+ "]. Factory throws exception.", e);
+		}
+		if (!resource.getType().isInstance(object))
+			throw new ResourceException("Factory for bean [" + name
+					+ "] returned [" + object + "] not an instance of ["
+					+ resource.getType() + "]");
+		return componentType.cast(object);
+	}
 
-				applyMethod(method, object, arguments);
-			}
+	private Object callFactory(final Resource resource) {
+		if (metrics == null || factoryWiring.get() != null)
+			return resource.getFactory().create(this);
+		factoryWiring.set(Boolean.TRUE);
+		try {
+			return resource.getFactory().create(this);
+		} finally {
+			factoryWiring.remove();
 		}
+	}
 
-		performMethodInjection(object, targetType.getSuperclass());
+	private void performFieldInjection(final Object object,
+			final InjectionPlan plan) {
+		for (final FieldInjection injection : plan.getFields()) {
+			final Object bean = getBeanForInject(injection.getDependency());
+			setToField(injection, object, bean);
+		}
 	}
 
-	private void applyMethod(Method method, Object object, Object[] arguments) {
-		if (!method.isAccessible())
-			method.setAccessible(true);
+	private void setToField(FieldInjection injection, Object object, Object bean) {
 		try {
-			method.invoke(object, arguments);
+			injection.getSetter().set(object, bean);
+		} catch (Exception e) {
+			throw new ResourceException("Failed to set bean to field ["
+					+ injection.getField().getName() + "] for ["
+					+ object.getClass() + "]", e);
+		}
+	}
+
+	private void performMethodInjection(final Object object,
+			final InjectionPlan plan) {
+		for (final MethodInjection injection : plan.getMethods()) {
+			final Object[] arguments = getBeansForInject(injection
+					.getDependencies());
+			applyMethod(injection, object, arguments);
+		}
+	}
+
+	private void applyMethod(MethodInjection injection, Object object,
+			Object[] arguments) {
+		try {
+			injection.getInvoker().invoke(object, arguments);
 		} catch (Exception e) {
 			throw new ResourceException("Failed to inject bean to method ["
-					+ method.getName() + "] for [" + object.getClass() + "]", e);
+					+ injection.getMethod().getName() + "] for ["
+					+ object.getClass() + "]", e);
 		}
 	}
 
@@ -300,120 +1354,638 @@ public class ApplicationBeanManager implements ResourceManager {
 		if (resource.isStarted())
 			return;
 
+		startDependencies(resource);
+
 		final Object bean = resource.getObject();
 		if (bean instanceof LifeCycle) {
 			if (logger.isDebugEnabled()) {
 				logger.debug("initializing resource ["
 						+ bean.getClass().getName() + "]");
 			}
-			((LifeCycle) bean).onStart();
-			startedResources.add(resource);
+			onStart(resource, (LifeCycle) bean);
+			synchronized (lock) {
+				startedResources.add(resource);
+			}
 		}
 
 		resource.markStarted();
 	}
 
-	private <T> Object[] getBeansForInject(Class<T> declaringClass,
-			final Annotation[][] annotations, final Class<?>[] argumentTypes) {
-		final Object[] arguments = new Object[argumentTypes.length];
-		for (int i = 0; i < argumentTypes.length; ++i) {
-			final Annotation[] argumentAnn = annotations[i];
-			final Inject inject = extractAnnotation(argumentAnn, Inject.class);
-			final Class<?> argumentType = argumentTypes[i];
-			arguments[i] = getBeanForInject(declaringClass, inject,
-					argumentType);
+	/**
+	 * Dependencies are normally started before the dependent bean is
+	 * constructed. When starting was deferred, they are started here so that a
+	 * bean never starts before the beans it depends on.
+	 */
+	private void startDependencies(final Resource resource) {
+		for (final Dependency dependency : DependencyGraph
+				.dependenciesOf(resource)) {
+			final Resource target = resolveQuietly(dependency);
+			// beans of an ancestor are started by the ancestor
+			if (target == null || target == resource || target.isStarted()
+					|| target.getContainer() != this)
+				continue;
+			lockForConstruction(dependency.getName(), target);
+			try {
+				if (target.getObject() != null)
+					startResouceIfNeeded(target);
+			} finally {
+				unlockForConstruction(target);
+			}
 		}
+	}
+
+	private Object[] getBeansForInject(final Dependency[] dependencies) {
+		final Object[] arguments = new Object[dependencies.length];
+		for (int i = 0; i < dependencies.length; ++i)
+			arguments[i] = getBeanForInject(dependencies[i]);
 		return arguments;
 	}
 
-	private Object getBeanForInject(final Class<?> declaringClass,
-			final Inject inject, final Class<?> beanClass) {
+	private Object getBeanForInject(final Dependency dependency) {
+		final StartupProfiler profiler = this.profiler;
+		if (profiler == null)
+			return getBeanForInject(dependency, dependency.getType());
+		final long start = profiler.beginDependency();
 		try {
-			Object bean;
-			if (inject == null || "".equals(inject.value())) {
-				if (logger.isDebugEnabled())
+			return getBeanForInject(dependency, dependency.getType());
+		} finally {
+			profiler.dependency(start);
+		}
+	}
+
+	private Object getBeanForInject(final Dependency dependency,
+			final Class<?> beanClass) {
+		if (dependency.isDeferred())
+			return getDeferredBeanForInject(dependency);
+		try {
+			if (logger.isDebugEnabled()) {
+				if (dependency.isNamed())
+					logger.debug("Required dependency of name ["
+							+ dependency.getName() + "] and type [" + beanClass
+							+ "]");
+				else
 					logger.debug("Required dependency of type [" + beanClass
 							+ "]");
-				bean = getBean(beanClass);
-			} else {
-				if (logger.isDebugEnabled())
-					logger.debug("Required dependency of name ["
-							+ inject.value() + "] and type [" + beanClass + "]");
-				bean = getBean(inject.value(), beanClass);
 			}
-			return bean;
+			// not through the public getBean, injections are not counted as
+			// requests by the metrics
+			if (dependency.isNamed())
+				return getBean(dependency.getName(),
+						resource(dependency.getName()), beanClass);
+			return getBean(beanClass.getName(), lookup(beanClass), beanClass);
 		} catch (final ResourceException e) {
 			throw new UnsatisfiedDependencyException(
 					"Unable to statisfy depdenency for class ["
-							+ declaringClass.getName()
+							+ dependency.getDeclaringClass().getName()
 							+ "]. Failed to obtain arugment of type ["
 							+ beanClass.getName() + "]", e);
 		}
 	}
 
+	private Object getDeferredBeanForInject(final Dependency dependency) {
+		final Provider<?> provider;
+		if (dependency.isNamed()) {
+			if (resource(dependency.getName()) == null)
+				throw new UnsatisfiedDependencyException(
+						"Unable to statisfy depdenency for class ["
+								+ dependency.getDeclaringClass().getName()
+								+ "]. No bean is registered with name ["
+								+ dependency.getName() + "]");
+			provider = getProvider(dependency.getName(), dependency.getType());
+		} else {
+			try {
+				if (lookup(dependency.getType()) == null)
+					throw new ResourceException("No bean is assignable to ["
+							+ dependency.getType().getName() + "]");
+			} catch (final ResourceException e) {
+				throw new UnsatisfiedDependencyException(
+						"Unable to statisfy depdenency for class ["
+								+ dependency.getDeclaringClass().getName()
+								+ "]. Failed to obtain arugment of type ["
+								+ dependency.getType().getName() + "]", e);
+			}
+			provider = getProvider(dependency.getType());
+		}
+		if (dependency.getKind() == Dependency.Kind.Lazy)
+			return Providers.lazyProxy(dependency.getType(), provider);
+		return provider;
+	}
+
+	public <T> Provider<T> getProvider(final Class<T> componentType) {
+		final Resource resource;
+		try {
+			resource = lookup(componentType);
+		} catch (final ResourceException e) {
+			// ambiguous for now, reported when the provider is used
+			return Providers.provider(this, null, componentType);
+		}
+		final Provider<T> provider = threadProvider(componentType.getName(),
+				resource, componentType);
+		return provider != null ? provider : Providers.provider(this, null,
+				componentType);
+	}
+
+	public <T> Provider<T> getProvider(final String name,
+			final Class<T> componentType) {
+		final Provider<T> provider = threadProvider(name, resource(name),
+				componentType);
+		return provider != null ? provider : Providers.provider(this, name,
+				componentType);
+	}
+
+	/**
+	 * A provider of a {@link Scope#Thread} bean reading the thread's instance
+	 * directly, without resolving the bean again.
+	 * 
+	 * @return <code>null</code> if the resource is not thread scoped.
+	 */
+	private <T> Provider<T> threadProvider(final String name,
+			final Resource resource, final Class<T> componentType) {
+		if (resource == null || resource.getThreadScope() == null)
+			return null;
+		if (!componentType.isAssignableFrom(resource.getType()))
+			throw new ResourceException("Bean [" + name + "] is of type ["
+					+ resource.getType() + "] not an instance of ["
+					+ componentType + "]");
+		@SuppressWarnings("unchecked")
+		final Provider<T> provider = (Provider<T>) resource.getThreadScope();
+		return provider;
+	}
+
+	public <T> BeanPool<T> getPool(final Class<T> componentType) {
+		return getPool(componentType.getName(), lookup(componentType),
+				componentType);
+	}
+
+	public <T> BeanPool<T> getPool(final String name,
+			final Class<T> componentType) {
+		return getPool(name, resource(name), componentType);
+	}
+
+	private <T> BeanPool<T> getPool(final String name,
+			final Resource resource, final Class<T> componentType) {
+		if (resource == null)
+			throw new ResourceException("Component with name [" + name
+					+ "] is not registerd.");
+		if (resource.getPool() == null)
+			throw new ResourceException("Bean [" + name + "] is not pooled");
+		if (!componentType.isAssignableFrom(resource.getType()))
+			throw new ResourceException("Bean [" + name + "] is of type ["
+					+ resource.getType() + "] not an instance of ["
+					+ componentType + "]");
+		@SuppressWarnings("unchecked")
+		final BeanPool<T> pool = (BeanPool<T>) resource.getPool();
+		return pool;
+	}
+
 	public List<Object> listBeans() {
 		// can be improved
+		final Collection<Resource> all = allResources();
 		final IdentityHashMap<Object, String> beans = new IdentityHashMap<Object, String>(
-				resources.size());
-		for (final String name : this.resources.keySet()) {
-			final Object bean = this.getBean(name, Object.class);
+				all.size());
+		for (final Resource resource : all) {
+			if (resource.getScope() != Scope.Singleton)
+				continue;
+			final Object bean = this.getBean(resource.getNames().get(0),
+					Object.class);
 			beans.put(bean, "");
 		}
 		return new ArrayList<Object>(beans.keySet());
 	}
 
 	public void startAll() {
-		this.listBeans();
+		startAll(null);
+	}
+
+	public void startAll(final Executor executor) {
+		final long start = System.nanoTime();
+		final Resource[] order = startOrder;
+		final DependencyGraph.Visitor starter = new DependencyGraph.Visitor() {
+			public void visit(final Resource resource) {
+				if (resource.getScope() == Scope.Singleton)
+					getBean(resource.getNames().get(0), resource,
+							Object.class);
+			}
+		};
+		if (executor == null && order != null) {
+			for (final Resource resource : order)
+				starter.visit(resource);
+		} else if (executor == null) {
+			createStartGraph().visitInOrder(starter);
+		} else {
+			createStartGraph().visitInParallel(executor, starter);
+		}
+		final ContainerMetrics metrics = this.metrics;
+		if (metrics != null)
+			metrics.started(System.nanoTime() - start);
+	}
+
+	/**
+	 * Starts all the beans in two phases. First all beans are constructed and
+	 * injected in dependency order without calling {@link LifeCycle#onStart()}.
+	 * Then the beans are started in waves: a wave contains beans that only
+	 * depend on beans of earlier waves, and the beans of a wave are started
+	 * concurrently on <code>executor</code>.
+	 * 
+	 * Beans requested from other threads while this method runs are started
+	 * when they are returned, together with their dependencies.
+	 * 
+	 * @param executor executor constructing and starting the beans. If
+	 *            <code>null</code>, the calling thread is used.
+	 * @return the start durations and the critical path of the start waves.
+	 */
+	public StartupReport startInWaves(final Executor executor) {
+		final DependencyGraph graph = createStartGraph();
+
+		final long constructionStart = System.nanoTime();
+		final DependencyGraph.Visitor constructor = new DependencyGraph.Visitor() {
+			public void visit(final Resource resource) {
+				if (resource.getScope() != Scope.Singleton)
+					return;
+				startDeferred.set(Boolean.TRUE);
+				try {
+					getBean(resource.getNames().get(0), resource,
+							Object.class);
+				} finally {
+					startDeferred.remove();
+				}
+			}
+		};
+		if (executor == null)
+			graph.visitInOrder(constructor);
+		else
+			graph.visitInParallel(executor, constructor);
+		final long constructionNanos = System.nanoTime() - constructionStart;
+
+		final Map<Resource, Long> durations = new ConcurrentHashMap<Resource, Long>();
+		final long wavesStart = System.nanoTime();
+		final int waves = graph.visitInWaves(executor,
+				new DependencyGraph.Visitor() {
+					public void visit(final Resource resource) {
+						if (resource.getScope() != Scope.Singleton)
+							return;
+						final long start = System.nanoTime();
+						startBean(resource);
+						durations.put(resource, System.nanoTime() - start);
+					}
+				});
+		final long startNanos = System.nanoTime() - wavesStart;
+
+		final Map<String, Long> startDurations = new LinkedHashMap<String, Long>();
+		for (final Resource resource : graph.getOrder())
+			if (durations.containsKey(resource))
+				startDurations.put(resource.getNames().get(0),
+						durations.get(resource));
+		final List<String> criticalPath = new ArrayList<String>();
+		long criticalPathNanos = 0;
+		for (final Resource resource : graph.criticalPath(durations)) {
+			if (!durations.containsKey(resource))
+				continue;
+			criticalPath.add(resource.getNames().get(0));
+			criticalPathNanos += durations.get(resource);
+		}
+		final StartupReport report = new StartupReport(constructionNanos,
+				startNanos, waves, startDurations, criticalPath,
+				criticalPathNanos);
+		final ContainerMetrics metrics = this.metrics;
+		if (metrics != null)
+			metrics.started(System.nanoTime() - constructionStart);
+		if (logger.isDebugEnabled())
+			logger.debug(report);
+		return report;
+	}
+
+	private void startBean(final Resource resource) {
+		final String name = resource.getNames().get(0);
+		lockForConstruction(name, resource);
+		try {
+			if (resource.getObject() == null)
+				throw new ResourceException("Bean [" + name
+						+ "] was not constructed before being started");
+			startResouceIfNeeded(resource);
+		} finally {
+			unlockForConstruction(resource);
+		}
+	}
+
+	DependencyGraph createDependencyGraph() {
+		return new DependencyGraph(allResources(), graphResolver);
+	}
+
+	/**
+	 * The dependency graph of the singletons started by {@link #startAll()}.
+	 */
+	private DependencyGraph createStartGraph() {
+		final List<Resource> singletons = new ArrayList<Resource>();
+		for (final Resource resource : allResources())
+			if (resource.getScope() == Scope.Singleton)
+				singletons.add(resource);
+		return createDependencyGraph(singletons);
+	}
+
+	/**
+	 * The dependency graph of <code>roots</code> and the resources of this
+	 * container they transitively depend on. Bindings unrelated to the roots
+	 * are left out, so they are neither validated nor planned.
+	 * 
+	 * @throws ResourceException if the roots depend on each other cyclically.
+	 */
+	DependencyGraph createDependencyGraph(final Collection<Resource> roots) {
+		final List<Resource> resources = new ArrayList<Resource>(roots);
+		final Set<Resource> reachable = Collections
+				.newSetFromMap(new IdentityHashMap<Resource, Boolean>());
+		reachable.addAll(roots);
+		for (int i = 0; i < resources.size(); ++i)
+			for (final Dependency dependency : DependencyGraph
+					.dependenciesOf(resources.get(i))) {
+				final Resource target = resolveQuietly(dependency);
+				if (target != null && target.getContainer() == this
+						&& reachable.add(target))
+					resources.add(target);
+			}
+		return new DependencyGraph(resources, graphResolver);
 	}
 
 	public void shutdown() {
+		final ShutdownReport report = shutdown(null, 0, 0);
+		if (!report.getFailures().isEmpty()) {
+			final Map.Entry<String, Throwable> failure = report.getFailures()
+					.entrySet().iterator().next();
+			throw new ResourceException("Failed to shutdown bean "
+					+ report.getBeans(Outcome.Failed), failure.getValue());
+		}
+	}
+
+	/**
+	 * Shutdown the ResourceManager, calling {@link LifeCycle#onShutdown()} of the
+	 * started beans in reverse dependency order: a bean is shutdown only after
+	 * the beans depending on it. Beans are shutdown in waves, beans of a wave
+	 * do not depend on each other and are shutdown in parallel.
+	 * 
+	 * Each bean is given <code>beanTimeout</code> to shutdown, the whole
+	 * shutdown is given <code>timeout</code>. The method does not wait for a
+	 * bean that timed out and the remaining waves proceed. Once
+	 * <code>timeout</code> passed, the remaining beans are skipped. Beans still
+	 * running their shutdown when the method returns are interrupted.
+	 * 
+	 * @return the outcome of each bean's shutdown.
+	 */
+	public ShutdownReport shutdown(final long beanTimeout, final long timeout,
+			final TimeUnit unit) {
+		final ExecutorService executor = Executors
+				.newCachedThreadPool(new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					public Thread newThread(final Runnable runnable) {
+						final Thread thread = new Thread(runnable,
+								"minioc-shutdown-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		try {
+			return shutdown(executor, unit.toNanos(beanTimeout),
+					unit.toNanos(timeout));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @param executor executor running the shutdown, if <code>null</code> the
+	 *            beans are shutdown in the calling thread without timeouts.
+	 */
+	private ShutdownReport shutdown(final ExecutorService executor,
+			final long beanTimeoutNanos, final long timeoutNanos) {
 		logger.debug("ResourceManager is shutting down.");
+		final long start = System.nanoTime();
+		// pooled and thread instances depend on the singletons, shutdown them
+		// first
+		for (final Resource resource : allResources()) {
+			if (resource.getPool() != null)
+				resource.getPool().close();
+			if (resource.getThreadScope() != null)
+				resource.getThreadScope().close();
+		}
+		final List<Resource> toShutdown;
+		synchronized (lock) {
+			toShutdown = new ArrayList<Resource>(startedResources);
+		}
+		final List<List<Resource>> waves = shutdownWaves(toShutdown);
+
+		final Map<String, Outcome> outcomes = new LinkedHashMap<String, Outcome>();
+		final Map<String, Throwable> failures = new LinkedHashMap<String, Throwable>();
+		for (final List<Resource> wave : waves) {
+			if (executor == null)
+				shutdownInCallingThread(wave, outcomes, failures);
+			else
+				shutdownInParallel(executor, wave, start, timeoutNanos,
+						beanTimeoutNanos, outcomes, failures);
+		}
+
 		synchronized (lock) {
-			for (final Resource resource : this.startedResources) {
-				final Object bean = resource.getObject();
+			this.state = State.Shutdown;
+		}
+		final ShutdownReport report = new ShutdownReport(outcomes, failures,
+				System.nanoTime() - start);
+		final ContainerMetrics metrics = this.metrics;
+		if (metrics != null)
+			metrics.shutdown(report.getDurationNanos());
+		if (logger.isDebugEnabled())
+			logger.debug(report);
+		return report;
+	}
+
+	/**
+	 * Group the started resources in waves to shutdown one after the other. A
+	 * resource is in a later wave than the started resources it depends on,
+	 * also through beans that were not started, and beans of a wave are in
+	 * reverse start order.
+	 * 
+	 * The dependencies of a bean created by a {@link BeanFactory} that is not
+	 * a {@link DependentBeanFactory} are not known, it is assumed to depend on
+	 * all the beans started before it. If the dependencies of the started
+	 * resources cannot be resolved, the resources are shutdown one by one in
+	 * reverse start order.
+	 * 
+	 * @param started the started resources in start order
+	 * @return the waves, the first to shutdown first
+	 */
+	private List<List<Resource>> shutdownWaves(final List<Resource> started) {
+		final DependencyGraph graph;
+		try {
+			graph = createDependencyGraph(started);
+		} catch (final ResourceException e) {
+			if (logger.isDebugEnabled())
+				logger.debug("Shutting down in reverse start order: "
+						+ e.getMessage());
+			final List<List<Resource>> waves = new ArrayList<List<Resource>>(
+					started.size());
+			for (final Resource resource : started)
+				waves.add(Collections.singletonList(resource));
+			Collections.reverse(waves);
+			return waves;
+		}
+		final Set<Resource> isStarted = Collections
+				.newSetFromMap(new IdentityHashMap<Resource, Boolean>());
+		isStarted.addAll(started);
+		// the closest started resources each resource depends on
+		final Map<Resource, Set<Resource>> startedDependencies = new IdentityHashMap<Resource, Set<Resource>>();
+		for (final Map.Entry<Resource, List<Resource>> entry : graph
+				.getDependencies().entrySet()) {
+			final Set<Resource> closest = Collections
+					.newSetFromMap(new IdentityHashMap<Resource, Boolean>());
+			for (final Resource dependency : entry.getValue()) {
+				if (isStarted.contains(dependency))
+					closest.add(dependency);
+				else
+					closest.addAll(startedDependencies.get(dependency));
+			}
+			startedDependencies.put(entry.getKey(), closest);
+		}
 
-				if (bean instanceof LifeCycle) {
-					if (logger.isDebugEnabled()) {
-						logger.debug("Shutting down resource ["
-								+ bean.getClass().getName() + "]");
+		// only dependencies started earlier count, so the levels are always
+		// set in start order
+		final Map<Resource, Integer> levels = new IdentityHashMap<Resource, Integer>();
+		final List<List<Resource>> waves = new ArrayList<List<Resource>>();
+		int startedLevel = -1;
+		for (final Resource resource : started) {
+			int level = 0;
+			if (resource.getFactory() != null
+					&& resource.getFactoryDependencies() == null) {
+				level = startedLevel + 1;
+			} else {
+				final Set<Resource> dependencies = startedDependencies
+						.get(resource);
+				if (dependencies != null)
+					for (final Resource dependency : dependencies) {
+						final Integer dependencyLevel = levels.get(dependency);
+						if (dependencyLevel != null)
+							level = Math.max(level, dependencyLevel + 1);
 					}
-					((LifeCycle) bean).onShutdown();
-				}
 			}
-			this.state = State.Shutdown;
+			levels.put(resource, level);
+			startedLevel = Math.max(startedLevel, level);
+			if (level == waves.size())
+				waves.add(new ArrayList<Resource>());
+			waves.get(level).add(resource);
 		}
+		for (final List<Resource> wave : waves)
+			Collections.reverse(wave);
+		Collections.reverse(waves);
+		return waves;
 	}
 
-	public State getState() {
-		return this.state;
+	private void shutdownInCallingThread(final List<Resource> wave,
+			final Map<String, Outcome> outcomes,
+			final Map<String, Throwable> failures) {
+		for (final Resource resource : wave) {
+			final String name = resource.getNames().get(0);
+			try {
+				shutdownBean(resource);
+				outcomes.put(name, Outcome.Completed);
+			} catch (final RuntimeException e) {
+				logger.error("Failed to shutdown bean [" + name + "]", e);
+				outcomes.put(name, Outcome.Failed);
+				failures.put(name, e);
+			}
+		}
+	}
+
+	private void shutdownInParallel(final ExecutorService executor,
+			final List<Resource> wave, final long start,
+			final long timeoutNanos, final long beanTimeoutNanos,
+			final Map<String, Outcome> outcomes,
+			final Map<String, Throwable> failures) {
+		final long waveStart = System.nanoTime();
+		if (waveStart - start >= timeoutNanos) {
+			for (final Resource resource : wave)
+				outcomes.put(resource.getNames().get(0), Outcome.Skipped);
+			return;
+		}
+
+		final Map<Resource, Future<?>> futures = new LinkedHashMap<Resource, Future<?>>();
+		for (final Resource resource : wave)
+			futures.put(resource, executor.submit(new Runnable() {
+				public void run() {
+					shutdownBean(resource);
+				}
+			}));
+
+		for (final Map.Entry<Resource, Future<?>> entry : futures.entrySet()) {
+			final String name = entry.getKey().getNames().get(0);
+			try {
+				final long now = System.nanoTime();
+				final long wait = Math.min(beanTimeoutNanos - (now - waveStart),
+						timeoutNanos - (now - start));
+				entry.getValue().get(Math.max(0, wait), TimeUnit.NANOSECONDS);
+				outcomes.put(name, Outcome.Completed);
+			} catch (final TimeoutException e) {
+				logger.error("Timed out shutting down bean [" + name + "]");
+				entry.getValue().cancel(true);
+				outcomes.put(name, Outcome.TimedOut);
+			} catch (final ExecutionException e) {
+				logger.error("Failed to shutdown bean [" + name + "]",
+						e.getCause());
+				outcomes.put(name, Outcome.Failed);
+				failures.put(name, e.getCause());
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				entry.getValue().cancel(true);
+				outcomes.put(name, Outcome.Skipped);
+			}
+		}
 	}
 
-	@SuppressWarnings("unchecked")
-	private <T extends Annotation> T extractAnnotation(final Annotation[] anns,
-			final Class<T> targetAnnotation) {
-		for (final Annotation ann : anns)
-			if (targetAnnotation.isAssignableFrom(ann.getClass()))
-				return (T) ann;
-		return null;
+	private void shutdownBean(final Resource resource) {
+		final Object bean = resource.getObject();
+		if (bean instanceof LifeCycle) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Shutting down resource ["
+						+ bean.getClass().getName() + "]");
+			}
+			final LifecycleTracer tracer = this.tracer;
+			if (tracer == null) {
+				((LifeCycle) bean).onShutdown();
+				return;
+			}
+			final Object context = tracer.begin(
+					LifecycleTracer.Operation.Shutdown, resource.getNames()
+							.get(0), resource.getType());
+			Throwable failure = null;
+			try {
+				((LifeCycle) bean).onShutdown();
+			} catch (final RuntimeException e) {
+				failure = e;
+				throw e;
+			} catch (final Error e) {
+				failure = e;
+				throw e;
+			} finally {
+				tracer.end(context, failure);
+			}
+		}
 	}
 
-	private <T> T instantiateBean(final String beanName,
-			final Constructor<T> constructor) {
-		final Class<T> declaringClass = constructor.getDeclaringClass();
-		final Annotation[][] annotations = constructor
-				.getParameterAnnotations();
-		final Class<?>[] argumentTypes = constructor.getParameterTypes();
+	public State getState() {
+		return this.state;
+	}
 
-		final Object[] arguments = getBeansForInject(declaringClass,
-				annotations, argumentTypes);
+	private Object instantiateBean(final String beanName,
+			final InjectionPlan plan) {
+		final Constructor<?> constructor = plan.getConstructor();
+		final Object[] arguments = getBeansForInject(plan
+				.getConstructorDependencies());
 
 		try {
-			return constructor.newInstance(arguments);
+			return plan.getInstantiator().newInstance(arguments);
 		} catch (final IllegalArgumentException e) {
-			final String errorMessage = detailedIllegalArgumentMessage(
-					beanName, constructor, arguments);
-
-			throw new ResourceException(errorMessage, e);
+			throw new ResourceException(detailedIllegalArgumentMessage(
+					beanName, constructor, arguments), e);
+		} catch (final ClassCastException e) {
+			// the method handle instantiator casts the arguments
+			throw new ResourceException(detailedIllegalArgumentMessage(
+					beanName, constructor, arguments), e);
 		} catch (final InstantiationException e) {
 			throw new ResourceException("Error instantiating bean [" + beanName
 					+ "]", e);
@@ -427,8 +1999,8 @@ public class ApplicationBeanManager implements ResourceManager {
 		}
 	}
 
-	private <T> String detailedIllegalArgumentMessage(final String beanName,
-			final Constructor<T> constructor, final Object[] arguments) {
+	private String detailedIllegalArgumentMessage(final String beanName,
+			final Constructor<?> constructor, final Object[] arguments) {
 		final Class<?>[] declaredTypes = constructor.getParameterTypes();
 		final StringBuilder errorMessageBuilder = new StringBuilder();
 		errorMessageBuilder.append("Illegal argument when constructing bean [")
@@ -453,16 +2025,143 @@ public class ApplicationBeanManager implements ResourceManager {
 		return errorMessageBuilder.toString();
 	}
 
-	private Constructor<?> getConstructorFor(final Resource bean) {
-		final Constructor<?>[] constructors = bean.getType().getConstructors();
-		if (constructors.length != 1) {
-			throw new ResourceException(
-					"When binding with type, component is required to have at least one public constructor."
-							+ "If component does not meet the criteria, using bindObject() instead.");
+	/**
+	 * Compile the registry into an immutable {@link FrozenRegistry} and drop
+	 * the concurrent maps used while binding.
+	 */
+	public void freeze() {
+		synchronized (lock) {
+			if (state != State.Running)
+				throw new ResourceException(
+						"Freezing is not allowed when the ResourceManager is in ["
+								+ this.state + "] state");
+			final Map<Class<?>, Resource[]> assignables = new HashMap<Class<?>, Resource[]>(
+					assignableIndex.size() * 4 / 3 + 1);
+			for (final Map.Entry<Class<?>, Candidates> entry : assignableIndex
+					.entrySet())
+				assignables.put(entry.getKey(), entry.getValue().toArray());
+			// the registry shares the trimmed slots instead of a copy
+			final Resource[] dense = Arrays.copyOf(slots, slotCount);
+			slots = dense;
+			frozen = new FrozenRegistry(dense, resources, assignables);
+			state = State.Frozen;
+			// the live maps are replaced rather than cleared, so readers still
+			// holding them see them whole. Readers missing in the empty maps
+			// check the frozen registry published above.
+			resources = new ConcurrentHashMap<String, Resource>();
+			typeIndex = new ConcurrentHashMap<Class<?>, Resource>();
+			assignableIndex = new ConcurrentHashMap<Class<?>, Candidates>();
+		}
+		if (logger.isDebugEnabled())
+			logger.debug("ResourceManager is frozen.");
+	}
+
+	/**
+	 * Record the construction and start timings of the beans with
+	 * <code>profiler</code>, or stop recording if <code>null</code>.
+	 */
+	public void setProfiler(final StartupProfiler profiler) {
+		this.profiler = profiler;
+	}
+
+	public StartupProfiler getProfiler() {
+		return profiler;
+	}
+
+	/**
+	 * Trace the life cycle operations of the beans with <code>tracer</code>,
+	 * or stop tracing if <code>null</code>.
+	 */
+	public void setTracer(final LifecycleTracer tracer) {
+		this.tracer = tracer;
+	}
+
+	public LifecycleTracer getTracer() {
+		return tracer;
+	}
+
+	/**
+	 * Call the constructors, fields and injector methods of the beans created
+	 * from now on with <code>strategy</code>. Containers use the strategy of
+	 * the <code>org.yldt.ioc.accessors</code> system property unless set, and
+	 * children the one of their parent when created.
+	 */
+	public void setAccessorStrategy(final AccessorStrategy strategy) {
+		if (strategy == null)
+			throw new IllegalArgumentException("strategy is required");
+		this.accessorStrategy = strategy;
+	}
+
+	public AccessorStrategy getAccessorStrategy() {
+		return accessorStrategy;
+	}
+
+	/**
+	 * Start recording the {@link ContainerMetrics} of this container. Calling
+	 * it again returns the metrics already recording.
+	 */
+	public ContainerMetrics enableMetrics() {
+		synchronized (lock) {
+			if (metrics == null)
+				metrics = new ContainerMetrics(this);
+			return metrics;
+		}
+	}
+
+	/**
+	 * Stop recording metrics. The metrics are unregistered from the platform
+	 * MBeanServer if they were registered.
+	 */
+	public void disableMetrics() {
+		final ContainerMetrics disabled;
+		synchronized (lock) {
+			disabled = metrics;
+			metrics = null;
 		}
-		return constructors[0];
+		if (disabled != null)
+			disabled.unregister();
 	}
-	
+
+	/**
+	 * The metrics recording, or <code>null</code> if not enabled.
+	 */
+	public ContainerMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Create a child container. The child resolves the beans it does not
+	 * register from this container, without copying them, so creating a child
+	 * is cheap. Beans bound to the child override the beans of the same name
+	 * or type of this container for the lookups made through the child, and
+	 * are started and shutdown with the child. Inherited beans remain managed
+	 * by this container.
+	 */
+	public ApplicationBeanManager createChild() {
+		return new ApplicationBeanManager(this);
+	}
+
+	/**
+	 * The container this container was created from, or <code>null</code>.
+	 */
+	public ApplicationBeanManager getParent() {
+		return parent;
+	}
+
+	/**
+	 * The resources registered in this container, in registration order.
+	 */
+	List<Resource> getRegisteredResources() {
+		synchronized (lock) {
+			return new ArrayList<Resource>(Arrays.asList(slots).subList(0,
+					slotCount));
+		}
+	}
+
+	public Bindings bindings() {
+		return new BatchBindings(this);
+	}
+
 	public void install(Module module) {
 		module.configure(this);
 	}
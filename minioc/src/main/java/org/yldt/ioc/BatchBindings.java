@@ -0,0 +1,165 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link Bindings} of an {@link ApplicationBeanManager}. Staging a binding
+ * only records it, the resources are created and validated on commit.
+ * 
+ * @author Yun Liu
+ */
+final class BatchBindings implements Bindings {
+	private final ApplicationBeanManager manager;
+	private final List<Binding> staged = new ArrayList<Binding>();
+
+	public BatchBindings(final ApplicationBeanManager manager) {
+		this.manager = manager;
+	}
+
+	public Bindings bind(final Class<?> componentType) {
+		return stage(componentType, null, null, null, null, null);
+	}
+
+	public Bindings bind(final Class<?> componentType,
+			final Class<?> interfaceType, final Class<?>... additionalTypes) {
+		return stage(componentType, null, null, null, interfaceType,
+				additionalTypes);
+	}
+
+	public Bindings bind(final Class<?> componentType, final String name,
+			final String... additionalNames) {
+		return stage(componentType, null, null,
+				ApplicationBeanManager.join(name, additionalNames), null, null);
+	}
+
+	public Bindings bind(final Class<?> componentType, final Scope scope) {
+		if (scope == null)
+			throw new ResourceException("Cannot bind with null scope");
+		return stage(componentType, null, scope, null, null, null);
+	}
+
+	public <T> Bindings bindFactory(final Class<T> componentType,
+			final BeanFactory<? extends T> factory) {
+		if (factory == null)
+			throw new ResourceException("Cannot bind null factory");
+		return stage(componentType, factory, null, null, null, null);
+	}
+
+	public <T> Bindings bindFactory(final Class<T> componentType,
+			final BeanFactory<? extends T> factory, final Scope scope,
+			final String name, final String... additionalNames) {
+		if (factory == null)
+			throw new ResourceException("Cannot bind null factory");
+		if (scope == null)
+			throw new ResourceException("Cannot bind with null scope");
+		return stage(componentType, factory, scope,
+				ApplicationBeanManager.join(name, additionalNames), null, null);
+	}
+
+	public Bindings bindObject(final Object component, final String name,
+			final String... additionalNames) {
+		if (component == null)
+			throw new ResourceException("Cannot bind null componenent");
+		staged.add(new Binding(component, ApplicationBeanManager.join(name,
+				additionalNames)));
+		return this;
+	}
+
+	public Bindings bindObject(final Object component,
+			final Class<?> interfaceType, final Class<?>... additionalTypes) {
+		if (component == null)
+			throw new ResourceException("Cannot bind null componenent");
+		final Binding binding = new Binding(component, null);
+		binding.interfaceType = interfaceType;
+		binding.additionalTypes = additionalTypes;
+		staged.add(binding);
+		return this;
+	}
+
+	private Bindings stage(final Class<?> componentType,
+			final BeanFactory<?> factory, final Scope scope,
+			final String[] names, final Class<?> interfaceType,
+			final Class<?>[] additionalTypes) {
+		final Binding binding = new Binding(componentType, factory, scope,
+				names);
+		binding.interfaceType = interfaceType;
+		binding.additionalTypes = additionalTypes;
+		staged.add(binding);
+		return this;
+	}
+
+	public void commit() {
+		try {
+			final List<Resource> batch = new ArrayList<Resource>(staged.size());
+			for (final Binding binding : staged)
+				batch.add(binding.toResource(manager));
+			manager.registerAll(batch);
+		} finally {
+			staged.clear();
+		}
+	}
+
+	/**
+	 * A staged binding, either of a type or of an object.
+	 */
+	private static final class Binding {
+		final Class<?> componentType;
+		final Object component;
+		final BeanFactory<?> factory;
+		final Scope scope;
+		final String[] names;
+		Class<?> interfaceType;
+		Class<?>[] additionalTypes;
+
+		Binding(final Class<?> componentType, final BeanFactory<?> factory,
+				final Scope scope, final String[] names) {
+			this.componentType = componentType;
+			this.component = null;
+			this.factory = factory;
+			this.scope = scope;
+			this.names = names;
+		}
+
+		Binding(final Object component, final String[] names) {
+			this.componentType = component.getClass();
+			this.component = component;
+			this.factory = null;
+			this.scope = Scope.Singleton;
+			this.names = names;
+		}
+
+		Resource toResource(final ApplicationBeanManager manager) {
+			String[] resourceNames = names;
+			if (interfaceType != null) {
+				ApplicationBeanManager.assertValidTypes(componentType,
+						interfaceType, additionalTypes);
+				resourceNames = ApplicationBeanManager.join(interfaceType
+						.getName(), ApplicationBeanManager
+						.toNames(additionalTypes));
+			}
+			if (component != null)
+				return Resource.forObject(component, resourceNames);
+			if (resourceNames == null)
+				resourceNames = manager.namesOf(componentType);
+			return manager.newResource(componentType, factory,
+					scope == null ? manager.scopeOf(componentType) : scope,
+					resourceNames);
+		}
+	}
+}
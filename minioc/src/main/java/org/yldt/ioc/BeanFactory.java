@@ -0,0 +1,35 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+/**
+ * Creates a fully injected bean instance without reflection. Factories are
+ * bound with {@link ResourceManager#bindFactory(Class, BeanFactory)} and are
+ * typically generated at compile time from the {@link org.yldt.ioc.annotations.Bean}
+ * and {@link org.yldt.ioc.annotations.Inject} annotations.
+ * 
+ * @author Yun Liu
+ */
+public interface BeanFactory<T> {
+	/**
+	 * Create the bean and inject its dependencies, obtaining them from
+	 * <code>manager</code>.
+	 * 
+	 * @param manager the ResourceManager owning the bean
+	 * @return the new bean instance
+	 */
+	public T create(ResourceManager manager);
+}
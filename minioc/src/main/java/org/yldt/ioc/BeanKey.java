@@ -0,0 +1,70 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+/**
+ * A handle to a bean of a ResourceManager, obtained with
+ * {@link ResourceManager#getKey(Class)} or
+ * {@link ResourceManager#getKey(String, Class)}. The bean is resolved and its
+ * type checked when the key is created, so obtaining the bean with
+ * {@link ResourceManager#getBean(BeanKey)} is an array read. Code obtaining the
+ * same beans very often should keep their keys.
+ * 
+ * A key is only valid for the ResourceManager that created it.
+ * 
+ * @author Yun Liu
+ */
+public final class BeanKey<T> {
+	private final ResourceManager owner;
+	private final String name;
+	private final Class<T> type;
+	private final int slot;
+
+	BeanKey(final ResourceManager owner, final String name,
+			final Class<T> type, final int slot) {
+		this.owner = owner;
+		this.name = name;
+		this.type = type;
+		this.slot = slot;
+	}
+
+	ResourceManager getOwner() {
+		return owner;
+	}
+
+	int getSlot() {
+		return slot;
+	}
+
+	/**
+	 * The name of the bean.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * The type the bean is obtained as.
+	 */
+	public Class<T> getType() {
+		return type;
+	}
+
+	@Override
+	public String toString() {
+		return "BeanKey[" + name + ", " + type.getName() + "]";
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded pool of instances of a bean with {@link Scope#Pooled} scope.
+ * Instances are created on demand up to the pool's maximum size, and idle
+ * instances are evicted once they were not borrowed for the pool's maximum
+ * idle time.
+ * 
+ * @author Yun Liu
+ */
+public interface BeanPool<T> {
+	/**
+	 * Borrow an instance, waiting for one to be returned if the maximum number
+	 * of instances are already borrowed.
+	 * 
+	 * @return an instance that must be given back with {@link #release(Object)}
+	 * @throws ResourceException if the ResourceManager was shutdown or the
+	 *             thread was interrupted while waiting.
+	 */
+	public T borrow();
+
+	/**
+	 * Borrow an instance, waiting at most <code>timeout</code> for one to be
+	 * returned.
+	 * 
+	 * @return an instance or <code>null</code> if none became available in
+	 *         time.
+	 */
+	public T borrow(long timeout, TimeUnit unit);
+
+	/**
+	 * Return an instance obtained from {@link #borrow()} to the pool.
+	 * 
+	 * @throws ResourceException if the instance was not borrowed from this
+	 *             pool.
+	 */
+	public void release(T instance);
+
+	/**
+	 * The maximum number of instances of the pool.
+	 */
+	public int getMaxSize();
+
+	/**
+	 * The number of instances currently created, borrowed or idle.
+	 */
+	public int getSize();
+}
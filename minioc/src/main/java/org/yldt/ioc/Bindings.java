@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+/**
+ * A batch of bindings registered together. The binding methods only stage the
+ * bindings, nothing is validated or registered until {@link #commit()} is
+ * called. The methods follow the same rules as their counterparts of
+ * {@link ResourceManager}.
+ * 
+ * A Bindings instance is not thread safe and should be used by a single
+ * thread.
+ * 
+ * @author Yun Liu
+ */
+public interface Bindings {
+	public Bindings bind(Class<?> componentType);
+
+	public Bindings bind(Class<?> componentType, Class<?> interfaceType,
+			Class<?>... additionalTypes);
+
+	public Bindings bind(Class<?> componentType, String name,
+			String... additionalNames);
+
+	public Bindings bind(Class<?> componentType, Scope scope);
+
+	public <T> Bindings bindFactory(Class<T> componentType,
+			BeanFactory<? extends T> factory);
+
+	public <T> Bindings bindFactory(Class<T> componentType,
+			BeanFactory<? extends T> factory, Scope scope, String name,
+			String... additionalNames);
+
+	public Bindings bindObject(Object component, String name,
+			String... additionalNames);
+
+	public Bindings bindObject(Object component, Class<?> interfaceType,
+			Class<?>... additionalTypes);
+
+	/**
+	 * Validate the staged bindings and register them all, taking the
+	 * ResourceManager's registration lock once. If a binding is invalid or a
+	 * name is bound twice, in the batch or in the ResourceManager, a
+	 * {@link ResourceException} or {@link IllegalArgumentException} is thrown
+	 * and none of the bindings are registered.
+	 * 
+	 * The batch is atomic for other bindings but not for lookups: threads
+	 * obtaining beans while the batch is registered may find some of its
+	 * beans and not others yet.
+	 * 
+	 * The staged bindings are cleared once committed, whether the batch was
+	 * registered or not, so the instance can be reused for another batch.
+	 */
+	public void commit();
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import java.util.Arrays;
+
+/**
+ * The resources assignable to a type. Resources are appended holding the
+ * registration lock and read without locking. The array grows geometrically,
+ * so registering n beans sharing a super type copies O(n) references in
+ * total.
+ * 
+ * @author Yun Liu
+ */
+final class Candidates {
+	// elements below size are never changed once size covers them
+	private volatile Resource[] items;
+	private volatile int size;
+
+	Candidates(final int capacity) {
+		items = new Resource[Math.max(capacity, 1)];
+	}
+
+	/**
+	 * Append a resource, must be called holding the registration lock.
+	 */
+	void add(final Resource resource) {
+		final int count = size;
+		Resource[] current = items;
+		if (count == current.length) {
+			current = Arrays.copyOf(current, count * 2);
+			current[count] = resource;
+			items = current;
+		} else {
+			current[count] = resource;
+		}
+		size = count + 1;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * The first resource, only meaningful if {@link #size()} is not 0.
+	 */
+	Resource first() {
+		return items[0];
+	}
+
+	Resource[] toArray() {
+		final int count = size;
+		return Arrays.copyOf(items, count);
+	}
+}
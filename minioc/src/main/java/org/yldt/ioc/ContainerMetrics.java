@@ -0,0 +1,217 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Runtime metrics of an {@link ApplicationBeanManager}, enabled with
+ * {@link ApplicationBeanManager#enableMetrics()}. Without metrics the
+ * ResourceManager does not read the clock nor update counters.
+ * 
+ * The counters are striped so that threads obtaining beans concurrently do
+ * not contend on them. The metrics can be published to the platform
+ * MBeanServer with {@link #register(String)}.
+ * 
+ * @author Yun Liu
+ */
+public final class ContainerMetrics implements ContainerMetricsMXBean {
+	private static final int BUCKETS = 22;
+	private static final long[] BOUNDS = new long[BUCKETS];
+	static {
+		for (int i = 0; i < BUCKETS - 1; i++)
+			BOUNDS[i] = 1000L << i;
+		BOUNDS[BUCKETS - 1] = Long.MAX_VALUE;
+	}
+
+	private final ApplicationBeanManager manager;
+	private final StripedCounter requests = new StripedCounter();
+	private final ConcurrentMap<String, StripedCounter> requestsByKey = new ConcurrentHashMap<String, StripedCounter>();
+	private final StripedCounter[] latencies = new StripedCounter[BUCKETS];
+	private final StripedCounter lockWaits = new StripedCounter();
+	private final StripedCounter lockWaitNanos = new StripedCounter();
+	private volatile long startupNanos;
+	private volatile long shutdownNanos;
+	private volatile ObjectName objectName;
+
+	ContainerMetrics(final ApplicationBeanManager manager) {
+		this.manager = manager;
+		for (int i = 0; i < BUCKETS; i++)
+			latencies[i] = new StripedCounter();
+	}
+
+	void request(final String key, final long startNanos) {
+		final long nanos = System.nanoTime() - startNanos;
+		requests.increment();
+		StripedCounter counter = requestsByKey.get(key);
+		if (counter == null) {
+			final StripedCounter created = new StripedCounter();
+			counter = requestsByKey.putIfAbsent(key, created);
+			if (counter == null)
+				counter = created;
+		}
+		counter.increment();
+		latencies[bucket(nanos)].increment();
+	}
+
+	/**
+	 * The bucket of the smallest bound not below <code>nanos</code>, bounds
+	 * double from one microsecond.
+	 */
+	static int bucket(final long nanos) {
+		if (nanos <= BOUNDS[0])
+			return 0;
+		// bucket i holds (1000 << (i - 1), 1000 << i], i.e. the bit length of
+		// the whole microseconds below nanos
+		final long micros = (nanos - 1) / 1000;
+		return Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+	}
+
+	void lockWait(final long startNanos) {
+		lockWaits.increment();
+		lockWaitNanos.add(System.nanoTime() - startNanos);
+	}
+
+	void started(final long nanos) {
+		startupNanos = nanos;
+	}
+
+	void shutdown(final long nanos) {
+		shutdownNanos = nanos;
+	}
+
+	public long getBeanRequests() {
+		return requests.sum();
+	}
+
+	public Map<String, Long> getBeanRequestsByKey() {
+		final Map<String, Long> counts = new TreeMap<String, Long>();
+		for (final Map.Entry<String, StripedCounter> entry : requestsByKey
+				.entrySet())
+			counts.put(entry.getKey(), entry.getValue().sum());
+		return counts;
+	}
+
+	public long[] getLookupLatencyBounds() {
+		return BOUNDS.clone();
+	}
+
+	public long[] getLookupLatencyHistogram() {
+		final long[] histogram = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++)
+			histogram[i] = latencies[i].sum();
+		return histogram;
+	}
+
+	public long getLockWaits() {
+		return lockWaits.sum();
+	}
+
+	public long getLockWaitNanos() {
+		return lockWaitNanos.sum();
+	}
+
+	public int getRegisteredBeans() {
+		return manager.getRegisteredResources().size();
+	}
+
+	public int getConstructedBeans() {
+		int constructed = 0;
+		for (final Resource resource : manager.getRegisteredResources())
+			if (resource.getObject() != null)
+				constructed++;
+		return constructed;
+	}
+
+	public int getStartedBeans() {
+		int started = 0;
+		for (final Resource resource : manager.getRegisteredResources())
+			if (resource.isStarted())
+				started++;
+		return started;
+	}
+
+	public long getStartupNanos() {
+		return startupNanos;
+	}
+
+	public long getShutdownNanos() {
+		return shutdownNanos;
+	}
+
+	public void reset() {
+		requests.reset();
+		requestsByKey.clear();
+		for (final StripedCounter latency : latencies)
+			latency.reset();
+		lockWaits.reset();
+		lockWaitNanos.reset();
+	}
+
+	/**
+	 * Publish the metrics to the platform MBeanServer under
+	 * <code>org.yldt.ioc:type=ContainerMetrics,name=&lt;name&gt;</code>.
+	 * 
+	 * @return the name the metrics are registered under.
+	 */
+	public synchronized ObjectName register(final String name) {
+		if (objectName != null)
+			throw new ResourceException("Metrics are already registered as ["
+					+ objectName + "]");
+		try {
+			final ObjectName registered = new ObjectName(
+					"org.yldt.ioc:type=ContainerMetrics,name="
+							+ ObjectName.quote(name));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+					registered);
+			objectName = registered;
+			return registered;
+		} catch (final JMException e) {
+			throw new ResourceException("Failed to register metrics [" + name
+					+ "]", e);
+		}
+	}
+
+	/**
+	 * Remove the metrics from the platform MBeanServer, if registered.
+	 */
+	public synchronized void unregister() {
+		if (objectName == null)
+			return;
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			if (server.isRegistered(objectName))
+				server.unregisterMBean(objectName);
+		} catch (final JMException e) {
+			throw new ResourceException("Failed to unregister metrics ["
+					+ objectName + "]", e);
+		} finally {
+			objectName = null;
+		}
+	}
+
+	public ObjectName getObjectName() {
+		return objectName;
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link ContainerMetrics}, published with
+ * {@link ContainerMetrics#register(String)}. Durations are in nanoseconds.
+ * 
+ * @author Yun Liu
+ */
+public interface ContainerMetricsMXBean {
+	/**
+	 * The number of beans obtained with <code>getBean</code>. Beans injected
+	 * by the ResourceManager or obtained by a {@link org.yldt.ioc.BeanFactory}
+	 * while creating a bean are not counted.
+	 */
+	long getBeanRequests();
+
+	/**
+	 * The number of beans obtained with <code>getBean</code>, by the name or
+	 * type name they were requested with.
+	 */
+	Map<String, Long> getBeanRequestsByKey();
+
+	/**
+	 * The upper bounds of the lookup latency histogram buckets, the last
+	 * bucket is unbounded.
+	 */
+	long[] getLookupLatencyBounds();
+
+	/**
+	 * The number of <code>getBean</code> calls that took up to the bound of
+	 * the bucket of the same index in {@link #getLookupLatencyBounds()}.
+	 */
+	long[] getLookupLatencyHistogram();
+
+	/**
+	 * The number of times a thread waited on a bean's construction lock.
+	 */
+	long getLockWaits();
+
+	long getLockWaitNanos();
+
+	int getRegisteredBeans();
+
+	int getConstructedBeans();
+
+	int getStartedBeans();
+
+	/**
+	 * The duration of the last <code>startAll</code> or
+	 * <code>startInWaves</code>, or 0.
+	 */
+	long getStartupNanos();
+
+	/**
+	 * The duration of the shutdown, or 0.
+	 */
+	long getShutdownNanos();
+
+	/**
+	 * Reset the request counters, the histogram and the lock waits.
+	 */
+	void reset();
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled set of bindings used to create many identical ResourceManagers.
+ * Compiling a template installs the modules once, validates the bindings and
+ * their dependency graph, and resolves the names, scopes, pool settings and
+ * assignable types of every bean. {@link #newManager()} then registers the
+ * beans in a new ResourceManager without reading annotations, walking type
+ * hierarchies or validating the bindings again. The injection plans of the
+ * beans are computed while compiling and cached for the process, and the
+ * dependency order of the beans is kept so that {@link ApplicationBeanManager#startAll()}
+ * does not build the dependency graph of each ResourceManager.
+ * 
+ * Objects bound with <code>bindObject()</code> are shared by all the
+ * ResourceManagers created from the template, the other beans are constructed
+ * by each ResourceManager.
+ * 
+ * @author Yun Liu
+ */
+public final class ContainerTemplate {
+	private final Entry[] entries;
+	private final int nameCount;
+	// assignable types and the indexes of the entries assignable to them
+	private final Class<?>[] assignableTypes;
+	private final int[][] assignableEntries;
+	// the indexes of the entries in dependency order
+	private final int[] startOrder;
+
+	private ContainerTemplate(final List<Resource> resources,
+			final List<Resource> order) {
+		this.entries = new Entry[resources.size()];
+		final Map<Resource, Integer> indexes = new IdentityHashMap<Resource, Integer>();
+		final Map<Class<?>, List<Integer>> assignables = new LinkedHashMap<Class<?>, List<Integer>>();
+		int names = 0;
+		for (int i = 0; i < entries.length; ++i) {
+			final Resource resource = resources.get(i);
+			entries[i] = new Entry(resource);
+			indexes.put(resource, i);
+			names += resource.getNames().size();
+			for (final Class<?> type : ApplicationBeanManager
+					.assignableTypes(resource.getType())) {
+				List<Integer> candidates = assignables.get(type);
+				if (candidates == null) {
+					candidates = new ArrayList<Integer>(1);
+					assignables.put(type, candidates);
+				}
+				candidates.add(i);
+			}
+		}
+		this.nameCount = names;
+		this.assignableTypes = assignables.keySet().toArray(
+				new Class<?>[assignables.size()]);
+		this.assignableEntries = new int[assignableTypes.length][];
+		for (int i = 0; i < assignableTypes.length; ++i) {
+			final List<Integer> candidates = assignables
+					.get(assignableTypes[i]);
+			assignableEntries[i] = new int[candidates.size()];
+			for (int j = 0; j < candidates.size(); ++j)
+				assignableEntries[i][j] = candidates.get(j);
+		}
+		this.startOrder = new int[entries.length];
+		int next = 0;
+		for (final Resource resource : order) {
+			final Integer index = indexes.get(resource);
+			if (index != null)
+				startOrder[next++] = index;
+		}
+	}
+
+	/**
+	 * Compile a template from modules.
+	 * 
+	 * @throws ResourceException if the bindings are invalid or the beans
+	 *             depend on each other cyclically.
+	 */
+	public static ContainerTemplate compile(final Module... modules) {
+		final ApplicationBeanManager manager = new ApplicationBeanManager();
+		for (final Module module : modules)
+			manager.install(module);
+		return of(manager);
+	}
+
+	/**
+	 * Compile a template from the bindings of a ResourceManager. The beans of
+	 * the ResourceManager are not copied, only the way they are bound.
+	 * 
+	 * @throws ResourceException if the beans depend on each other cyclically.
+	 */
+	public static ContainerTemplate of(final ApplicationBeanManager manager) {
+		final List<Resource> resources = new ArrayList<Resource>();
+		for (final Resource resource : manager.getRegisteredResources())
+			// every ResourceManager binds itself
+			if (resource.getObject() != manager)
+				resources.add(resource);
+		// validates the graph and computes the injection plans
+		return new ContainerTemplate(resources, manager
+				.createDependencyGraph().getOrder());
+	}
+
+	/**
+	 * Create a ResourceManager with the bindings of the template.
+	 */
+	public ApplicationBeanManager newManager() {
+		final ApplicationBeanManager manager = new ApplicationBeanManager();
+		final List<Resource> batch = new ArrayList<Resource>(entries.length);
+		final Map<String, Resource> names = new HashMap<String, Resource>(
+				nameCount * 4 / 3 + 1);
+		for (final Entry entry : entries) {
+			final Resource resource = entry.newResource(manager);
+			batch.add(resource);
+			for (final String name : entry.names)
+				names.put(name, resource);
+		}
+		final Map<Class<?>, List<Resource>> assignables = new HashMap<Class<?>, List<Resource>>(
+				assignableTypes.length * 4 / 3 + 1);
+		for (int i = 0; i < assignableTypes.length; ++i) {
+			final int[] indexes = assignableEntries[i];
+			final List<Resource> candidates = new ArrayList<Resource>(
+					indexes.length);
+			for (final int index : indexes)
+				candidates.add(batch.get(index));
+			assignables.put(assignableTypes[i], candidates);
+		}
+		manager.publish(batch, names, assignables);
+		final Resource[] order = new Resource[startOrder.length];
+		for (int i = 0; i < startOrder.length; ++i)
+			order[i] = batch.get(startOrder[i]);
+		manager.setStartOrder(order);
+		return manager;
+	}
+
+	/**
+	 * The number of beans bound by the template.
+	 */
+	public int size() {
+		return entries.length;
+	}
+
+	/**
+	 * The resolved binding of a resource.
+	 */
+	private static final class Entry {
+		final Class<?> type;
+		final String[] names;
+		final BeanFactory<?> factory;
+		final Scope scope;
+		final Object object;
+		final int maxPoolSize;
+		final long maxIdleNanos;
+
+		Entry(final Resource resource) {
+			this.type = resource.getType();
+			this.names = resource.getNames().toArray(
+					new String[resource.getNames().size()]);
+			this.factory = resource.getFactory();
+			this.scope = resource.getScope();
+			this.object = resource.isProvided() ? resource.getObject() : null;
+			final Pool<?> pool = resource.getPool();
+			this.maxPoolSize = pool == null ? 0 : pool.getMaxSize();
+			this.maxIdleNanos = pool == null ? 0 : pool.getMaxIdleNanos();
+		}
+
+		Resource newResource(final ApplicationBeanManager manager) {
+			if (object != null)
+				return Resource.forObject(object, names);
+			return manager.newResource(type, factory, scope, names,
+					maxPoolSize, maxIdleNanos);
+		}
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yldt.ioc;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+import org.yldt.ioc.annotations.Inject;
+import org.yldt.ioc.annotations.Lazy;
+
+/**
+ * A single injection point: the bean name and type to be resolved for a
+ * constructor argument, field or method argument.
+ * 
+ * For a {@link Provider} injection point, the type is the provided type and
+ * not {@link Provider} itself.
+ * 
+ * @author Yun Liu
+ */
+final class Dependency {
+	public static enum Kind {
+		/** The bean itself is injected. */
+		Direct,
+		/** A {@link Provider} of the bean is injected. */
+		Provider,
+		/** A {@link Lazy} proxy of the bean is injected. */
+		Lazy;
+	}
+
+	private final Class<?> declaringClass;
+	private final Class<?> type;
+	private final String name;
+	private final boolean named;
+	private final Kind kind;
+
+	public Dependency(final Class<?> declaringClass,
+			final Annotation[] annotations, final Class<?> type,
+			final Type genericType) {
+		final Inject inject = find(annotations, Inject.class);
+		this.declaringClass = declaringClass;
+		if (type == Provider.class) {
+			this.kind = Kind.Provider;
+			this.type = providedType(declaringClass, genericType);
+		} else if (find(annotations, Lazy.class) != null) {
+			if (!type.isInterface())
+				throw new ResourceException("@Lazy injection of ["
+						+ type.getName() + "] in [" + declaringClass.getName()
+						+ "] requires an interface type");
+			this.kind = Kind.Lazy;
+			this.type = type;
+		} else {
+			this.kind = Kind.Direct;
+			this.type = type;
+		}
+		this.named = inject != null && !"".equals(inject.value());
+		this.name = named ? inject.value() : this.type.getName();
+	}
+
+	/**
+	 * A dependency declared by a {@link DependentBeanFactory}.
+	 * 
+	 * @param name the bean name or <code>null</code> to resolve the bean by
+	 *            type.
+	 */
+	public Dependency(final Class<?> declaringClass, final Class<?> type,
+			final String name) {
+		this.declaringClass = declaringClass;
+		this.kind = Kind.Direct;
+		this.type = type;
+		this.named = name != null;
+		this.name = named ? name : type.getName();
+	}
+
+	private static Class<?> providedType(final Class<?> declaringClass,
+			final Type genericType) {
+		if (genericType instanceof ParameterizedType) {
+			final Type provided = ((ParameterizedType) genericType)
+					.getActualTypeArguments()[0];
+			if (provided instanceof Class<?>)
+				return (Class<?>) provided;
+			if (provided instanceof ParameterizedType)
+				return (Class<?>) ((ParameterizedType) provided).getRawType();
+		}
+		throw new ResourceException("Provider injection in ["
+				+ declaringClass.getName()
+				+ "] must declare the provided class as type argument");
+	}
+
+	private static <T extends Annotation> T find(final Annotation[] annotations,
+			final Class<T> annotationType) {
+		for (final Annotation annotation : annotations)
+			if (annotationType.isInstance(annotation))
+				return annotationType.cast(annotation);
+		return null;
+	}
+
+	public Class<?> getDeclaringClass() {
+		return declaringClass;
+	}
+
+	public Class<?> getType() {
+		return type;
+	}
+
+	/**
+	 * The bean name to resolve, either the {@link Inject#value()} or the type
+	 * name when no name is given.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public boolean isNamed() {
+		return named;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Whether the bean is obtained after the injection, in which case it is not
+	 * required to exist when the dependent bean is constructed.
+	 */
+	public boolean isDeferred() {
+		return kind != Kind.Direct;
+	}
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Dependency graph of a set of resources computed from their
+ * {@link InjectionPlan}s, or the dependencies declared by a
+ * {@link DependentBeanFactory}. Resources bound as objects or created by
+ * another {@link BeanFactory} have no known dependencies, deferred
+ * dependencies such as {@link Provider}s are not part of the graph. The graph is a snapshot and
+ * does not change when more resources are bound.
+ * 
+ * @author Yun Liu
+ */
+final class DependencyGraph {
+	/**
+	 * Maps an injection point to the resource satisfying it, or
+	 * <code>null</code> if there is none in the graph's container.
+	 */
+	interface Resolver {
+		Resource resolve(Dependency dependency);
+	}
+
+	interface Visitor {
+		void visit(Resource resource);
+	}
+
+	private final List<Node> order;
+
+	public DependencyGraph(final Collection<Resource> resources,
+			final Resolver resolver) {
+		final Map<Resource, Node> nodes = new IdentityHashMap<Resource, Node>();
+		for (final Resource resource : resources)
+			if (!nodes.containsKey(resource))
+				nodes.put(resource, new Node(nodes.size(), resource));
+
+		for (final Node node : nodes.values()) {
+			for (final Dependency dependency : dependenciesOf(node.resource)) {
+				final Resource target = resolver.resolve(dependency);
+				final Node dependencyNode = target == null ? null : nodes
+						.get(target);
+				if (dependencyNode != null
+						&& !node.dependencies.contains(dependencyNode)) {
+					node.dependencies.add(dependencyNode);
+					dependencyNode.dependents.add(node);
+				}
+			}
+		}
+		this.order = Collections.unmodifiableList(sort(nodes.values()));
+	}
+
+	static List<Dependency> dependenciesOf(final Resource resource) {
+		if (resource.isProvided())
+			return Collections.emptyList();
+		if (resource.getFactory() != null) {
+			final List<Dependency> declared = resource.getFactoryDependencies();
+			return declared == null ? Collections.<Dependency> emptyList()
+					: declared;
+		}
+		return InjectionPlan.forType(resource.getType()).getDirectDependencies();
+	}
+
+	private static List<Node> sort(final Collection<Node> nodes) {
+		final int[] pending = new int[nodes.size()];
+		final Deque<Node> ready = new ArrayDeque<Node>();
+		for (final Node node : nodes) {
+			pending[node.index] = node.dependencies.size();
+			if (pending[node.index] == 0)
+				ready.add(node);
+		}
+
+		final List<Node> sorted = new ArrayList<Node>(nodes.size());
+		while (!ready.isEmpty()) {
+			final Node node = ready.poll();
+			sorted.add(node);
+			for (final Node dependent : node.dependents)
+				if (--pending[dependent.index] == 0)
+					ready.add(dependent);
+		}
+
+		if (sorted.size() != nodes.size()) {
+			final List<String> cyclic = new ArrayList<String>();
+			for (final Node node : nodes)
+				if (pending[node.index] > 0)
+					cyclic.add(node.getName());
+			throw new ResourceException("Cyclic dependency detected among beans "
+					+ cyclic
+					+ ". This indicates a cycular dependency is not supported in this"
+					+ " resource manager implementation");
+		}
+		return sorted;
+	}
+
+	/**
+	 * The resources ordered so that each comes after its dependencies.
+	 */
+	public List<Resource> getOrder() {
+		final List<Resource> resources = new ArrayList<Resource>(order.size());
+		for (final Node node : order)
+			resources.add(node.resource);
+		return resources;
+	}
+
+	/**
+	 * The direct dependencies of each resource, in dependency order.
+	 */
+	public Map<Resource, List<Resource>> getDependencies() {
+		final Map<Resource, List<Resource>> dependencies = new LinkedHashMap<Resource, List<Resource>>();
+		for (final Node node : order) {
+			final List<Resource> resources = new ArrayList<Resource>(
+					node.dependencies.size());
+			for (final Node dependency : node.dependencies)
+				resources.add(dependency.resource);
+			dependencies.put(node.resource, resources);
+		}
+		return dependencies;
+	}
+
+	/**
+	 * The resources grouped in waves. Every resource depends only on resources
+	 * of earlier waves, so the resources of one wave are independent of each
+	 * other.
+	 */
+	public List<List<Resource>> getWaves() {
+		final int[] levels = new int[order.size()];
+		final List<List<Resource>> waves = new ArrayList<List<Resource>>();
+		for (final Node node : order) {
+			int level = 0;
+			for (final Node dependency : node.dependencies)
+				level = Math.max(level, levels[dependency.index] + 1);
+			levels[node.index] = level;
+			if (level == waves.size())
+				waves.add(new ArrayList<Resource>());
+			waves.get(level).add(node.resource);
+		}
+		return waves;
+	}
+
+	/**
+	 * The chain of dependent resources with the largest total duration, ordered
+	 * from the first resource to the last. Resources without a duration count
+	 * as zero.
+	 */
+	public List<Resource> criticalPath(final Map<Resource, Long> durations) {
+		final long[] finish = new long[order.size()];
+		final Node[] previous = new Node[order.size()];
+		Node last = null;
+		for (final Node node : order) {
+			long start = 0;
+			for (final Node dependency : node.dependencies)
+				if (previous[node.index] == null
+						|| finish[dependency.index] > start) {
+					start = finish[dependency.index];
+					previous[node.index] = dependency;
+				}
+			final Long duration = durations.get(node.resource);
+			finish[node.index] = start + (duration == null ? 0 : duration);
+			if (last == null || finish[node.index] > finish[last.index])
+				last = node;
+		}
+
+		final List<Resource> path = new ArrayList<Resource>();
+		for (Node node = last; node != null; node = previous[node.index])
+			path.add(0, node.resource);
+		return path;
+	}
+
+	/**
+	 * Visit every resource in the calling thread, dependencies first.
+	 */
+	public void visitInOrder(final Visitor visitor) {
+		for (final Node node : order)
+			visitor.visit(node.resource);
+	}
+
+	/**
+	 * Visit every resource on <code>executor</code>. A resource is visited only
+	 * after all its dependencies were visited, independent resources are
+	 * visited concurrently. Once a visit fails the remaining resources are
+	 * skipped and the first failure is thrown after all submitted visits
+	 * finished.
+	 * 
+	 * Visits rejected by <code>executor</code> are queued and run by the
+	 * calling thread, so a bounded executor only limits the concurrency.
+	 */
+	public void visitInParallel(final Executor executor, final Visitor visitor) {
+		new ParallelVisit(executor, visitor).run();
+	}
+
+	/**
+	 * Visit the resources wave by wave, see {@link #getWaves()}. The resources
+	 * of a wave are visited concurrently on <code>executor</code> and the next
+	 * wave starts once the whole wave was visited. No further wave is started
+	 * after a failure.
+	 * 
+	 * @param executor executor visiting the resources. If <code>null</code>,
+	 *            the calling thread is used.
+	 * @return the number of waves
+	 */
+	public int visitInWaves(final Executor executor, final Visitor visitor) {
+		final List<List<Resource>> waves = getWaves();
+		for (final List<Resource> wave : waves) {
+			if (executor == null) {
+				for (final Resource resource : wave)
+					visitor.visit(resource);
+				continue;
+			}
+
+			final CountDownLatch done = new CountDownLatch(wave.size());
+			final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+			for (final Resource resource : wave) {
+				final Runnable task = new Runnable() {
+					public void run() {
+						try {
+							visitor.visit(resource);
+						} catch (final Throwable e) {
+							failure.compareAndSet(null, e);
+						} finally {
+							done.countDown();
+						}
+					}
+				};
+				try {
+					executor.execute(task);
+				} catch (final RejectedExecutionException e) {
+					failure.compareAndSet(null, e);
+					done.countDown();
+				}
+			}
+			await(done);
+			rethrow(failure.get());
+		}
+		return waves.size();
+	}
+
+	private static void await(final CountDownLatch done) {
+		try {
+			done.await();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ResourceException(
+					"Interrupted while visiting the dependency graph", e);
+		}
+	}
+
+	private static void rethrow(final Throwable cause) {
+		if (cause instanceof RuntimeException)
+			throw (RuntimeException) cause;
+		if (cause instanceof Error)
+			throw (Error) cause;
+	}
+
+	private final class ParallelVisit {
+		private final Executor executor;
+		private final Visitor visitor;
+		private final AtomicIntegerArray pending;
+		private final AtomicInteger remaining;
+		private final AtomicReference<Throwable> failure;
+		// visits rejected by the executor, and FINISHED once the last visit
+		// ended, taken by the thread calling run()
+		private final BlockingQueue<Node> queued;
+
+		ParallelVisit(final Executor executor, final Visitor visitor) {
+			this.executor = executor;
+			this.visitor = visitor;
+			this.pending = new AtomicIntegerArray(order.size());
+			this.remaining = new AtomicInteger(order.size());
+			this.failure = new AtomicReference<Throwable>();
+			this.queued = new LinkedBlockingQueue<Node>();
+			for (final Node node : order)
+				pending.set(node.index, node.dependencies.size());
+		}
+
+		void run() {
+			if (order.isEmpty())
+				return;
+			for (final Node node : order)
+				if (node.dependencies.isEmpty())
+					submit(node);
+			// a rejected visit runs here rather than in the submitting
+			// thread, which would recurse along the dependents otherwise
+			try {
+				for (Node node = queued.take(); node != Node.FINISHED; node = queued
+						.take())
+					visit(node);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ResourceException(
+						"Interrupted while visiting the dependency graph", e);
+			}
+			rethrow(failure.get());
+		}
+
+		private void submit(final Node node) {
+			final Runnable task = new Runnable() {
+				public void run() {
+					visit(node);
+				}
+			};
+			try {
+				executor.execute(task);
+			} catch (final RejectedExecutionException e) {
+				queued.add(node);
+			}
+		}
+
+		private void visit(final Node node) {
+			try {
+				if (failure.get() == null)
+					visitor.visit(node.resource);
+			} catch (final Throwable e) {
+				failure.compareAndSet(null, e);
+			} finally {
+				for (final Node dependent : node.dependents)
+					if (pending.decrementAndGet(dependent.index) == 0)
+						submit(dependent);
+				if (remaining.decrementAndGet() == 0)
+					queued.add(Node.FINISHED);
+			}
+		}
+	}
+
+	private static final class Node {
+		// marks the end of a parallel visit
+		static final Node FINISHED = new Node(-1, null);
+		final int index;
+		final Resource resource;
+		final List<Node> dependencies = new ArrayList<Node>();
+		final List<Node> dependents = new ArrayList<Node>();
+
+		Node(final int index, final Resource resource) {
+			this.index = index;
+			this.resource = resource;
+		}
+
+		String getName() {
+			return resource.getNames().get(0);
+		}
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+/**
+ * A {@link BeanFactory} declaring the beans it obtains from the
+ * ResourceManager to create the bean. The ResourceManager constructs them
+ * before calling the factory, orders the startup and shutdown of the bean
+ * after them and detects cycles through the factory, as for beans created
+ * reflectively. The factories generated from the
+ * {@link org.yldt.ioc.annotations.Bean} annotation implement this interface.
+ * 
+ * Beans obtained through a {@link Provider} are not required to create the
+ * bean and are not declared.
+ * 
+ * @author Yun Liu
+ */
+public interface DependentBeanFactory<T> extends BeanFactory<T> {
+	/**
+	 * @return the types of the beans obtained while creating the bean.
+	 */
+	public Class<?>[] getDependencyTypes();
+
+	/**
+	 * @return the names the beans are obtained with, in the order of
+	 *         {@link #getDependencyTypes()}. A <code>null</code> name stands
+	 *         for a bean obtained by type.
+	 */
+	public String[] getDependencyNames();
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable registry of a frozen {@link ApplicationBeanManager}. The resources
+ * are the container's dense slots, names and types are mapped to their slot
+ * with open addressing tables of parallel arrays, so a lookup neither locks
+ * nor allocates.
+ * 
+ * Types resolve like they do before freezing: to the resource bound to the
+ * type's name, or else to the only resource assignable to the type.
+ * 
+ * @author Yun Liu
+ */
+final class FrozenRegistry {
+	private static final int AMBIGUOUS = -1;
+	private final Resource[] resources;
+	private final String[] names;
+	private final int[] nameSlots;
+	private final Class<?>[] types;
+	private final int[] typeSlots;
+	// candidates of the types resolving to several resources, only used to
+	// report the ambiguity
+	private final Map<Class<?>, Resource[]> ambiguities;
+
+	/**
+	 * @param slots the registered resources, each at the index of its
+	 *            {@link Resource#getSlot() slot}. The array is shared, not
+	 *            copied.
+	 */
+	public FrozenRegistry(final Resource[] slots,
+			final Map<String, Resource> resourcesByName,
+			final Map<Class<?>, Resource[]> assignables) {
+		this.resources = slots;
+
+		this.names = new String[tableSize(resourcesByName.size())];
+		this.nameSlots = new int[names.length];
+		for (final Map.Entry<String, Resource> entry : resourcesByName
+				.entrySet()) {
+			int i = indexOf(entry.getKey().hashCode(), names.length);
+			while (names[i] != null)
+				i = (i + 1) & (names.length - 1);
+			names[i] = entry.getKey();
+			nameSlots[i] = entry.getValue().getSlot();
+		}
+
+		this.types = new Class<?>[tableSize(assignables.size())];
+		this.typeSlots = new int[types.length];
+		final Map<Class<?>, Resource[]> ambiguous = new HashMap<Class<?>, Resource[]>();
+		for (final Map.Entry<Class<?>, Resource[]> entry : assignables
+				.entrySet()) {
+			final Class<?> type = entry.getKey();
+			final Resource byName = resourcesByName.get(type.getName());
+			final int slot;
+			if (byName != null) {
+				slot = byName.getSlot();
+			} else if (entry.getValue().length == 1) {
+				slot = entry.getValue()[0].getSlot();
+			} else {
+				slot = AMBIGUOUS;
+				ambiguous.put(type, entry.getValue());
+			}
+			int i = indexOf(System.identityHashCode(type), types.length);
+			while (types[i] != null)
+				i = (i + 1) & (types.length - 1);
+			types[i] = type;
+			typeSlots[i] = slot;
+		}
+		this.ambiguities = ambiguous.isEmpty() ? Collections
+				.<Class<?>, Resource[]> emptyMap() : ambiguous;
+	}
+
+	/**
+	 * A power of two leaving at least half of the table empty.
+	 */
+	private static int tableSize(final int entries) {
+		int size = 2;
+		while (size < entries * 2)
+			size <<= 1;
+		return size;
+	}
+
+	private static int indexOf(final int hash, final int length) {
+		// spread the high bits, identity hashes and string hashes of similar
+		// names differ mostly in their low bits otherwise
+		return (hash ^ (hash >>> 16)) & (length - 1);
+	}
+
+	public Resource get(final String name) {
+		final int mask = names.length - 1;
+		for (int i = indexOf(name.hashCode(), names.length);; i = (i + 1)
+				& mask) {
+			final String key = names[i];
+			if (key == null)
+				return null;
+			if (key == name || key.equals(name))
+				return resources[nameSlots[i]];
+		}
+	}
+
+	/**
+	 * @throws ResourceException if several resources are assignable to the
+	 *             type and none is bound to its name.
+	 */
+	public Resource get(final Class<?> type) {
+		final int mask = types.length - 1;
+		for (int i = indexOf(System.identityHashCode(type), types.length);; i = (i + 1)
+				& mask) {
+			final Class<?> key = types[i];
+			if (key == null)
+				return get(type.getName());
+			if (key == type) {
+				final int slot = typeSlots[i];
+				if (slot == AMBIGUOUS)
+					throw ApplicationBeanManager.ambiguous(type,
+							ambiguities.get(type));
+				return resources[slot];
+			}
+		}
+	}
+
+	public boolean contains(final Class<?> type) {
+		final int mask = types.length - 1;
+		for (int i = indexOf(System.identityHashCode(type), types.length);; i = (i + 1)
+				& mask) {
+			final Class<?> key = types[i];
+			if (key == null)
+				return get(type.getName()) != null;
+			if (key == type)
+				return true;
+		}
+	}
+
+	/**
+	 * The distinct resources of the registry.
+	 */
+	public List<Resource> getResources() {
+		return Collections.unmodifiableList(Arrays.asList(resources));
+	}
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yldt.ioc;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.yldt.ioc.Accessors.FieldSetter;
+import org.yldt.ioc.Accessors.Instantiator;
+import org.yldt.ioc.Accessors.MethodInvoker;
+import org.yldt.ioc.annotations.Inject;
+
+/**
+ * The reflective metadata needed to build a bean of a given class: its
+ * constructor and constructor arguments, the injected fields and the injector
+ * methods. Plans are immutable and computed once per class, so repeated
+ * construction and new containers skip the reflection scanning. Members are
+ * wrapped with the {@link Accessors} of a strategy, each strategy has its own
+ * plans.
+ * 
+ * @author Yun Liu
+ */
+final class InjectionPlan {
+	private static final ClassValue<InjectionPlan> methodHandlePlans = new ClassValue<InjectionPlan>() {
+		@Override
+		protected InjectionPlan computeValue(final Class<?> type) {
+			return new InjectionPlan(type, Accessors.METHOD_HANDLES);
+		}
+	};
+	private static final ClassValue<InjectionPlan> reflectionPlans = new ClassValue<InjectionPlan>() {
+		@Override
+		protected InjectionPlan computeValue(final Class<?> type) {
+			return new InjectionPlan(type, Accessors.REFLECTION);
+		}
+	};
+
+	private final Class<?> type;
+	private final Constructor<?> constructor;
+	private final Instantiator instantiator;
+	private final Dependency[] constructorDependencies;
+	private final FieldInjection[] fields;
+	private final MethodInjection[] methods;
+	private final List<Dependency> dependencies;
+	private final List<Dependency> directDependencies;
+
+	private InjectionPlan(final Class<?> type, final Accessors accessors) {
+		this.type = type;
+		this.constructor = findConstructor(type);
+		this.instantiator = constructor == null ? null : accessors
+				.instantiator(constructor);
+		this.constructorDependencies = constructor == null ? null
+				: toDependencies(type, constructor.getParameterAnnotations(),
+						constructor.getParameterTypes(),
+						constructor.getGenericParameterTypes());
+		final List<FieldInjection> fieldList = new ArrayList<FieldInjection>();
+		final List<MethodInjection> methodList = new ArrayList<MethodInjection>();
+		for (Class<?> targetType = type; targetType != null
+				&& targetType != Object.class; targetType = targetType
+				.getSuperclass()) {
+			collectFields(accessors, type, targetType, fieldList);
+			collectMethods(accessors, targetType, methodList);
+		}
+		this.fields = fieldList.toArray(new FieldInjection[fieldList.size()]);
+		this.methods = methodList.toArray(new MethodInjection[methodList
+				.size()]);
+		this.dependencies = collectDependencies();
+		final List<Dependency> direct = new ArrayList<Dependency>();
+		for (final Dependency dependency : dependencies)
+			if (!dependency.isDeferred())
+				direct.add(dependency);
+		this.directDependencies = Collections.unmodifiableList(direct);
+	}
+
+	private List<Dependency> collectDependencies() {
+		final List<Dependency> all = new ArrayList<Dependency>();
+		if (constructorDependencies != null)
+			all.addAll(Arrays.asList(constructorDependencies));
+		for (final FieldInjection field : fields)
+			all.add(field.getDependency());
+		for (final MethodInjection method : methods)
+			all.addAll(Arrays.asList(method.getDependencies()));
+		return Collections.unmodifiableList(all);
+	}
+
+	/**
+	 * Obtain the cached plan for <code>type</code> with the default strategy.
+	 */
+	public static InjectionPlan forType(final Class<?> type) {
+		return forType(type, Accessors.getDefaultStrategy());
+	}
+
+	/**
+	 * Obtain the cached plan for <code>type</code> with the accessors of
+	 * <code>strategy</code>.
+	 */
+	public static InjectionPlan forType(final Class<?> type,
+			final AccessorStrategy strategy) {
+		return strategy == AccessorStrategy.Reflection ? reflectionPlans
+				.get(type) : methodHandlePlans.get(type);
+	}
+
+	private static Constructor<?> findConstructor(final Class<?> type) {
+		final Constructor<?>[] constructors = type.getConstructors();
+		return constructors.length == 1 ? constructors[0] : null;
+	}
+
+	private static void collectFields(final Accessors accessors,
+			final Class<?> beanType,
+			final Class<?> targetType, final List<FieldInjection> fieldList) {
+		for (final Field field : targetType.getDeclaredFields()) {
+			final Inject inject = field.getAnnotation(Inject.class);
+			if (inject != null) {
+				if (!field.isAccessible())
+					field.setAccessible(true);
+				fieldList.add(new FieldInjection(field, accessors
+						.fieldSetter(field), new Dependency(beanType, field
+						.getAnnotations(), field.getType(), field
+						.getGenericType())));
+			}
+		}
+	}
+
+	private static void collectMethods(final Accessors accessors,
+			final Class<?> targetType,
+			final List<MethodInjection> methodList) {
+		for (final Method method : targetType.getDeclaredMethods()) {
+			final Inject inject = method.getAnnotation(Inject.class);
+			if (inject != null) {
+				if (!method.isAccessible())
+					method.setAccessible(true);
+				methodList.add(new MethodInjection(method, accessors
+						.methodInvoker(method), toDependencies(
+						method.getDeclaringClass(),
+						method.getParameterAnnotations(),
+						method.getParameterTypes(),
+						method.getGenericParameterTypes())));
+			}
+		}
+	}
+
+	private static Dependency[] toDependencies(final Class<?> declaringClass,
+			final Annotation[][] annotations, final Class<?>[] argumentTypes,
+			final Type[] genericTypes) {
+		final Dependency[] dependencies = new Dependency[argumentTypes.length];
+		// generic types may omit synthetic parameters, e.g. of inner classes
+		final boolean generic = genericTypes.length == argumentTypes.length;
+		for (int i = 0; i < argumentTypes.length; ++i)
+			dependencies[i] = new Dependency(declaringClass, annotations[i],
+					argumentTypes[i], generic ? genericTypes[i]
+							: argumentTypes[i]);
+		return dependencies;
+	}
+
+	public Class<?> getType() {
+		return type;
+	}
+
+	/**
+	 * The only public constructor of the type.
+	 * 
+	 * @throws ResourceException
+	 *             if the type does not have exactly one public constructor.
+	 */
+	public Constructor<?> getConstructor() {
+		if (constructor == null)
+			throw new ResourceException(
+					"When binding with type, component is required to have at least one public constructor."
+							+ "If component does not meet the criteria, using bindObject() instead.");
+		return constructor;
+	}
+
+	public Instantiator getInstantiator() {
+		getConstructor();
+		return instantiator;
+	}
+
+	public Dependency[] getConstructorDependencies() {
+		getConstructor();
+		return constructorDependencies;
+	}
+
+	/**
+	 * All the dependencies of the type: constructor arguments, fields and
+	 * method arguments. Unlike {@link #getConstructorDependencies()}, this
+	 * does not fail for types without a usable constructor.
+	 */
+	public List<Dependency> getDependencies() {
+		return dependencies;
+	}
+
+	/**
+	 * The dependencies required to construct the type, excluding deferred
+	 * dependencies such as {@link Provider}s.
+	 */
+	public List<Dependency> getDirectDependencies() {
+		return directDependencies;
+	}
+
+	public FieldInjection[] getFields() {
+		return fields;
+	}
+
+	public MethodInjection[] getMethods() {
+		return methods;
+	}
+
+	static final class FieldInjection {
+		private final Field field;
+		private final FieldSetter setter;
+		private final Dependency dependency;
+
+		FieldInjection(final Field field, final FieldSetter setter,
+				final Dependency dependency) {
+			this.field = field;
+			this.setter = setter;
+			this.dependency = dependency;
+		}
+
+		public Field getField() {
+			return field;
+		}
+
+		public FieldSetter getSetter() {
+			return setter;
+		}
+
+		public Dependency getDependency() {
+			return dependency;
+		}
+	}
+
+	static final class MethodInjection {
+		private final Method method;
+		private final MethodInvoker invoker;
+		private final Dependency[] dependencies;
+
+		MethodInjection(final Method method, final MethodInvoker invoker,
+				final Dependency[] dependencies) {
+			this.method = method;
+			this.invoker = invoker;
+			this.dependencies = dependencies;
+		}
+
+		public Method getMethod() {
+			return method;
+		}
+
+		public MethodInvoker getInvoker() {
+			return invoker;
+		}
+
+		public Dependency[] getDependencies() {
+			return dependencies;
+		}
+	}
+}
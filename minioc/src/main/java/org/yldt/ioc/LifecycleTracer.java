@@ -0,0 +1,52 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+/**
+ * Receives the begin and end of the life cycle operations of the beans of an
+ * {@link ApplicationBeanManager}, set with
+ * {@link ApplicationBeanManager#setTracer(LifecycleTracer)}. Operations of a
+ * bean nest inside the operations of the beans depending on it, and run on
+ * the thread calling {@link #begin(Operation, String, Class)}.
+ * 
+ * @author Yun Liu
+ */
+public interface LifecycleTracer {
+	public static enum Operation {
+		/** Creation of the bean, including its injection. */
+		Construction,
+		/** Field and method injection of a bean not created by a factory. */
+		Injection,
+		Start,
+		Shutdown
+	}
+
+	/**
+	 * Called before the operation.
+	 * 
+	 * @return a context handed back to {@link #end(Object, Throwable)}, may be
+	 *         <code>null</code>.
+	 */
+	public Object begin(Operation operation, String name, Class<?> type);
+
+	/**
+	 * Called after the operation, even if it failed.
+	 * 
+	 * @param failure the exception thrown by the operation, or
+	 *            <code>null</code>.
+	 */
+	public void end(Object context, Throwable failure);
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.yldt.logging.LogManager;
+import org.yldt.logging.Logger;
+
+/**
+ * {@link BeanPool} of a pooled resource. Idle instances are reused most
+ * recently returned first, so that rarely needed instances age and are evicted
+ * when the pool is used. Eviction happens when instances are borrowed or
+ * returned, no thread is dedicated to it.
+ * 
+ * @author Yun Liu
+ */
+final class Pool<T> implements BeanPool<T> {
+	private static final Logger logger = LogManager.getLogger(Pool.class);
+	private final String name;
+	private final Class<T> type;
+	private final int maxSize;
+	private final long maxIdleNanos;
+	private final Provider<T> creator;
+	// guarded by this
+	private final Deque<Idle<T>> idle = new ArrayDeque<Idle<T>>();
+	private final Map<T, Boolean> borrowed = new IdentityHashMap<T, Boolean>();
+	private int size;
+	private boolean closed;
+
+	/**
+	 * @param creator creates a new instance each time it is called.
+	 */
+	public Pool(final String name, final Class<T> type, final int maxSize,
+			final long maxIdleNanos, final Provider<T> creator) {
+		if (maxSize < 1)
+			throw new ResourceException("Pool size of bean [" + name
+					+ "] must be positive, was [" + maxSize + "]");
+		this.name = name;
+		this.type = type;
+		this.maxSize = maxSize;
+		this.maxIdleNanos = maxIdleNanos;
+		this.creator = creator;
+	}
+
+	public T borrow() {
+		return borrow(-1);
+	}
+
+	public T borrow(final long timeout, final TimeUnit unit) {
+		return borrow(Math.max(0, unit.toNanos(timeout)));
+	}
+
+	/**
+	 * @param timeoutNanos negative to wait without timeout.
+	 */
+	private T borrow(final long timeoutNanos) {
+		final long deadline = System.nanoTime() + timeoutNanos;
+		List<T> evicted = null;
+		try {
+			synchronized (this) {
+				evicted = evictExpired();
+				while (true) {
+					if (closed)
+						throw new ResourceException("Pool of bean [" + name
+								+ "] is closed");
+					if (!idle.isEmpty()) {
+						final T instance = idle.removeFirst().instance;
+						borrowed.put(instance, Boolean.TRUE);
+						return instance;
+					}
+					if (size < maxSize) {
+						++size;
+						break;
+					}
+					if (timeoutNanos < 0) {
+						this.wait();
+					} else {
+						final long remaining = deadline - System.nanoTime();
+						if (remaining <= 0)
+							return null;
+						TimeUnit.NANOSECONDS.timedWait(this, remaining);
+					}
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ResourceException("Interrupted while borrowing bean ["
+					+ name + "]", e);
+		} finally {
+			// evicted instances are shutdown without holding the monitor
+			shutdown(evicted);
+		}
+		return create();
+	}
+
+	private T create() {
+		boolean created = false;
+		try {
+			final T instance = creator.get();
+			synchronized (this) {
+				borrowed.put(instance, Boolean.TRUE);
+			}
+			created = true;
+			return instance;
+		} finally {
+			if (!created) {
+				synchronized (this) {
+					--size;
+					this.notify();
+				}
+			}
+		}
+	}
+
+	public void release(final T instance) {
+		if (!type.isInstance(instance))
+			throw new ResourceException("[" + instance
+					+ "] cannot be returned to the pool of bean [" + name + "]");
+		final List<T> evicted;
+		final boolean close;
+		synchronized (this) {
+			if (borrowed.remove(instance) == null)
+				throw new ResourceException("[" + instance
+						+ "] was not borrowed from the pool of bean [" + name
+						+ "]");
+			close = closed;
+			if (close) {
+				--size;
+			} else {
+				idle.addFirst(new Idle<T>(instance, System.nanoTime()));
+				this.notify();
+			}
+			evicted = evictExpired();
+		}
+		if (close)
+			shutdown(instance);
+		shutdown(evicted);
+	}
+
+	/**
+	 * Shutdown the idle instances, borrowed instances are shutdown when they
+	 * are returned.
+	 */
+	public void close() {
+		final List<T> toShutdown = new ArrayList<T>();
+		synchronized (this) {
+			closed = true;
+			for (final Idle<T> entry : idle)
+				toShutdown.add(entry.instance);
+			size -= idle.size();
+			idle.clear();
+			this.notifyAll();
+		}
+		shutdown(toShutdown);
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getMaxIdleNanos() {
+		return maxIdleNanos;
+	}
+
+	public synchronized int getSize() {
+		return size;
+	}
+
+	/**
+	 * Remove the idle instances not used for longer than the maximum idle
+	 * time, must be called holding the pool's monitor.
+	 */
+	private List<T> evictExpired() {
+		List<T> evicted = null;
+		final long now = System.nanoTime();
+		while (!idle.isEmpty() && now - idle.peekLast().since > maxIdleNanos) {
+			if (evicted == null)
+				evicted = new ArrayList<T>();
+			evicted.add(idle.removeLast().instance);
+			--size;
+		}
+		return evicted;
+	}
+
+	private void shutdown(final List<T> instances) {
+		if (instances != null)
+			for (final T instance : instances)
+				shutdown(instance);
+	}
+
+	private void shutdown(final T instance) {
+		if (!(instance instanceof LifeCycle))
+			return;
+		if (logger.isDebugEnabled())
+			logger.debug("Shutting down pooled instance [" + instance
+					+ "] of bean [" + name + "]");
+		try {
+			((LifeCycle) instance).onShutdown();
+		} catch (final RuntimeException e) {
+			logger.error("Failed to shutdown pooled instance of bean [" + name
+					+ "]", e);
+		}
+	}
+
+	private static final class Idle<T> {
+		final T instance;
+		final long since;
+
+		Idle(final T instance, final long since) {
+			this.instance = instance;
+			this.since = since;
+		}
+	}
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+/**
+ * Provides a bean on demand. Injecting a <code>Provider&lt;T&gt;</code> instead
+ * of <code>T</code> defers obtaining the bean, and constructing it if needed,
+ * until {@link #get()} is first called.
+ * 
+ * @author Yun Liu
+ */
+public interface Provider<T> {
+	/**
+	 * Obtain the bean, see {@link ResourceManager#getBean(String, Class)}.
+	 * 
+	 * @return a bean instance
+	 */
+	public T get();
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Deferred bean references handed out for {@link Provider} and
+ * {@link org.yldt.ioc.annotations.Lazy} injection points.
+ * 
+ * @author Yun Liu
+ */
+final class Providers {
+	private Providers() {
+	}
+
+	/**
+	 * @param name name of the bean, if <code>null</code> the bean is resolved
+	 *            by type.
+	 */
+	public static <T> Provider<T> provider(final ResourceManager manager,
+			final String name, final Class<T> type) {
+		return new Provider<T>() {
+			public T get() {
+				if (name == null)
+					return manager.getBean(type);
+				return manager.getBean(name, type);
+			}
+
+			@Override
+			public String toString() {
+				return "Provider[" + (name == null ? type.getName() : name)
+						+ "]";
+			}
+		};
+	}
+
+	/**
+	 * Create a proxy implementing the interface <code>type</code> that obtains
+	 * the bean from <code>provider</code> on the first method call and
+	 * delegates all calls to it.
+	 */
+	public static Object lazyProxy(final Class<?> type,
+			final Provider<?> provider) {
+		return Proxy.newProxyInstance(type.getClassLoader(),
+				new Class<?>[] { type }, new LazyBean(provider));
+	}
+
+	private static final class LazyBean implements InvocationHandler {
+		private final Provider<?> provider;
+		private volatile Object target;
+
+		LazyBean(final Provider<?> provider) {
+			this.provider = provider;
+		}
+
+		public Object invoke(final Object proxy, final Method method,
+				final Object[] args) throws Throwable {
+			Object bean = target;
+			if (bean == null)
+				target = bean = provider.get();
+			try {
+				return method.invoke(bean, args);
+			} catch (final InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
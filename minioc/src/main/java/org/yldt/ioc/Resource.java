@@ -18,23 +18,53 @@ package org.yldt.ioc;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Internal representation of a managed resource. This class is not thread safe
- * and requires synchronization.
+ * and requires holding its construction lock, with the exception of
+ * {@link #isStarted()} and {@link #getOwner()} which may be read without a
+ * lock. Once a resource is started its object is never changed, so a reader
+ * observing the started flag also observes the object that was set before it.
  * @author Yun Liu
  */
 final class Resource {
 	private final Class<?> type;
 	private final List<String> names;
+	private final ReentrantLock constructionLock;
+	private final BeanFactory<?> factory;
+	// declared by a DependentBeanFactory, or null
+	private final List<Dependency> factoryDependencies;
+	private final boolean provided;
+	private final Scope scope;
+	private Pool<?> pool;
+	private ThreadScope<?> threadScope;
+	private int slot = -1;
+	private ApplicationBeanManager container;
 	private Object object;
-	private boolean underConstruction;
-	private boolean started;
+	private Thread constructingThread;
+	private volatile Thread owner;
+	private volatile boolean started;
 
     public Resource(Class<?> type, String... names) {
+		this(type, null, Scope.Singleton, names);
+	}
+
+	public Resource(Class<?> type, BeanFactory<?> factory, Scope scope,
+			String... names) {
+		this(type, factory, false, scope, names);
+	}
+
+	private Resource(Class<?> type, BeanFactory<?> factory, boolean provided,
+			Scope scope, String... names) {
 		this.type = type;
+		this.factory = factory;
+		this.factoryDependencies = factory instanceof DependentBeanFactory<?> ? declaredDependencies(
+				type, (DependentBeanFactory<?>) factory) : null;
+		this.provided = provided;
+		this.scope = scope;
 		this.names = Collections.unmodifiableList(Arrays.asList(names));
-		this.underConstruction = false;
+		this.constructionLock = new ReentrantLock();
 		this.started = false;
 	}
 
@@ -46,6 +76,107 @@ final class Resource {
 		return names;
 	}
 
+	/**
+	 * Create a resource for an object constructed outside of the
+	 * ResourceManager.
+	 */
+	public static Resource forObject(Object object, String... names) {
+		final Resource resource = new Resource(object.getClass(), null, true,
+				Scope.Singleton, names);
+		resource.setObject(object);
+		return resource;
+	}
+
+	/**
+	 * Whether the object was constructed outside of the ResourceManager.
+	 */
+	public boolean isProvided() {
+		return provided;
+	}
+
+	/**
+	 * The factory used to create the object, or <code>null</code> if the
+	 * object is created reflectively.
+	 */
+	public BeanFactory<?> getFactory() {
+		return factory;
+	}
+
+	/**
+	 * The dependencies declared by the factory, or <code>null</code> if the
+	 * object is created reflectively or the factory does not declare them.
+	 */
+	public List<Dependency> getFactoryDependencies() {
+		return factoryDependencies;
+	}
+
+	private static List<Dependency> declaredDependencies(final Class<?> type,
+			final DependentBeanFactory<?> factory) {
+		final Class<?>[] types = factory.getDependencyTypes();
+		final String[] names = factory.getDependencyNames();
+		if (types == null || names == null || types.length != names.length)
+			throw new ResourceException("Factory for [" + type.getName()
+					+ "] declares " + Arrays.toString(types)
+					+ " dependency types but " + Arrays.toString(names)
+					+ " names");
+		final Dependency[] dependencies = new Dependency[types.length];
+		for (int i = 0; i < types.length; ++i)
+			dependencies[i] = new Dependency(type, types[i], names[i]);
+		return Collections.unmodifiableList(Arrays.asList(dependencies));
+	}
+
+	public Scope getScope() {
+		return scope;
+	}
+
+	/**
+	 * The pool of a {@link Scope#Pooled} resource, set before the resource is
+	 * registered.
+	 */
+	public Pool<?> getPool() {
+		return pool;
+	}
+
+	public void setPool(Pool<?> pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * The instances of a {@link Scope#Thread} resource, set before the
+	 * resource is registered.
+	 */
+	public ThreadScope<?> getThreadScope() {
+		return threadScope;
+	}
+
+	public void setThreadScope(ThreadScope<?> threadScope) {
+		this.threadScope = threadScope;
+	}
+
+	/**
+	 * The dense index of the resource in its ResourceManager, assigned on
+	 * registration.
+	 */
+	public int getSlot() {
+		return slot;
+	}
+
+	public void setSlot(int slot) {
+		this.slot = slot;
+	}
+
+	/**
+	 * The ResourceManager the resource is registered in, which constructs and
+	 * starts the resource for its child containers.
+	 */
+	public ApplicationBeanManager getContainer() {
+		return container;
+	}
+
+	public void setContainer(ApplicationBeanManager container) {
+		this.container = container;
+	}
+
 	public void setObject(Object object) {
 		this.object = object;
 	}
@@ -58,12 +189,27 @@ final class Resource {
         this.started = true;
     }
 	
-	public void setUnderConstruction(boolean underConstruction) {
-	    this.underConstruction = underConstruction;
+	public ReentrantLock getConstructionLock() {
+		return constructionLock;
+	}
+
+	/**
+	 * The thread currently holding the construction lock, or <code>null</code>.
+	 */
+	public Thread getOwner() {
+		return owner;
+	}
+
+	public void setOwner(Thread owner) {
+		this.owner = owner;
+	}
+
+	public void setUnderConstruction(Thread constructingThread) {
+		this.constructingThread = constructingThread;
 	}
 
-	public boolean isUnderConstruction() {
-		return underConstruction;
+	public boolean isUnderConstructionBy(Thread thread) {
+		return constructingThread == thread;
 	}
 
     public boolean isStarted() {
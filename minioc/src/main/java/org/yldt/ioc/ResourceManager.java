@@ -16,6 +16,8 @@
 package org.yldt.ioc;
 
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import org.yldt.ioc.annotations.Bean;
 
@@ -41,6 +43,7 @@ import org.yldt.ioc.annotations.Bean;
 public interface ResourceManager {
     public static enum State {
         Running,
+        Frozen,
         Shutdown;
     }
     
@@ -102,6 +105,84 @@ public interface ResourceManager {
      */
     public void bind(Class<?> componentType, String name, String... additionalNames);
 
+    /**
+     * Bind the <code>componentType</code> as a bean resource created by <code>factory</code>. The bean
+     * names follow the same rules as {@link #bind(Class)}.
+     * 
+     * A new singleton instance of the component will be constructed with {@link BeanFactory#create(ResourceManager)}
+     * when the <code>getBean()</code> method is invoked. The factory is responsible for the injection of
+     * the bean's dependencies.
+     * 
+     * @param componentType component class type.
+     * @param factory factory creating the component.
+     */
+    public <T> void bindFactory(Class<T> componentType, BeanFactory<? extends T> factory);
+
+    /**
+     * Bind the <code>componentType</code> as a bean resource of the given scope and names created by
+     * <code>factory</code>. Unlike {@link #bindFactory(Class, BeanFactory)}, the scope and names declared with
+     * {@link org.yldt.ioc.annotations.Bean} are not read, only the pool size and idle time of a {@link Scope#Pooled}
+     * bean are. This is how generated factories are bound, with the values read when the bean was compiled.
+     * 
+     * Factory beans are checked and reported like the beans constructed by the ResourceManager: a singleton or pooled
+     * bean whose {@link DependentBeanFactory} declares a {@link Scope#Thread} bean is rejected, a dependency the factory
+     * fails to obtain is reported with an {@link UnsatisfiedDependencyException}, and any other failure of the factory
+     * with a {@link ResourceException}.
+     * 
+     * @param componentType component class type.
+     * @param factory factory creating the component.
+     * @param scope scope of the bean.
+     * @param name bean name
+     * @param additionalNames additional bean name.
+     */
+    public <T> void bindFactory(Class<T> componentType, BeanFactory<? extends T> factory, Scope scope, String name,
+            String... additionalNames);
+
+    /**
+     * Bind the <code>componentType</code> as a bean resource of the given scope, overriding the scope declared with
+     * {@link org.yldt.ioc.annotations.Bean}. The bean names follow the same rules as {@link #bind(Class)}.
+     * 
+     * A {@link Scope#Prototype} bean is constructed each time it is obtained or injected. A {@link Scope#Pooled} bean is
+     * obtained with {@link #getPool(Class)}, with the pool size and idle time declared with
+     * {@link org.yldt.ioc.annotations.Bean}. Each thread obtains its own instance of a {@link Scope#Thread} bean.
+     * 
+     * @param componentType component class type.
+     * @param scope scope of the bean.
+     */
+    public void bind(Class<?> componentType, Scope scope);
+
+    /**
+     * Bind the <code>componentType</code> as a {@link Scope#Pooled} bean resource. The bean names follow the same rules as
+     * {@link #bind(Class)}.
+     * 
+     * @param componentType component class type.
+     * @param maxSize maximum number of instances of the pool.
+     * @param maxIdle time after which an instance that was not borrowed is evicted from the pool.
+     * @param unit unit of <code>maxIdle</code>
+     */
+    public void bindPool(Class<?> componentType, int maxSize, long maxIdle, TimeUnit unit);
+
+    /**
+     * Start a batch of bindings. The bindings staged on the returned {@link Bindings} are validated and registered together
+     * by {@link Bindings#commit()}, which either registers all of them or none. Registering many beans in a batch takes the
+     * registration lock once instead of once per bean, modules binding many beans should prefer it.
+     * 
+     * @return a new batch of bindings
+     */
+    public Bindings bindings();
+
+    /**
+     * Create a child ResourceManager. The child obtains the beans it does not register itself from this ResourceManager
+     * through a read only view, and only holds the beans bound to it, which override the beans of this ResourceManager with
+     * the same name or type. Creating a child is cheap, it is intended for scopes such as tenants sharing the infrastructure
+     * beans of a parent.
+     * 
+     * Shutting down the child shuts down its own beans only.
+     * 
+     * @return a new child ResourceManager
+     */
+    public ResourceManager createChild();
+
     /**
      * Bind the provided object to the ResourceManager with name <code>component.getClass().getName()</code>
      * 
@@ -151,6 +232,12 @@ public interface ResourceManager {
     /**
      * Obtain a bean instance registered for the type(more precisely, registered as <code>componentType.getClass().getName()</code>).
      * 
+     * If no bean is registered with the type's name, the only bean whose class extends or implements <code>componentType</code>
+     * is returned. The method throws {@link ResourceException} if several beans do, one of them should then be bound to the type's
+     * name.
+     * 
+     * A new instance of a {@link Scope#Prototype} bean is returned on each call. {@link Scope#Pooled} beans cannot be
+     * obtained with this method, they are borrowed from the pool returned by {@link #getPool(Class)}.
      * 
      * The method throws {@link ResourceException} if the ResourceManager fails to construct the bean. If the ResourceManager failed
      * to obtain dependent beans, the method throws {@link UnsatisfiedDependencyException}.
@@ -165,7 +252,6 @@ public interface ResourceManager {
     /**
      * Obtain a bean instance registered for the type(more precisely, registered as <code>componentType.getClass().getName()</code>).
      * 
-     * 
      * The method throws {@link ResourceException} if the ResourceManager fails to construct the bean. If the ResourceManager failed
      * to obtain dependent beans, the method throws {@link UnsatisfiedDependencyException}.
      * 
@@ -181,8 +267,123 @@ public interface ResourceManager {
     public <T> T getBean(String name, Class<T> componentType);
 
     /**
-     * The state of the ResourceManager. The ResourceManager is in {@link State#Running} until the {@link #shutdown()} method
-     * is called.
+     * Obtain a key for the bean registered for the type, following the same rules as {@link #getBean(Class)}. The bean is not
+     * constructed.
+     * 
+     * @param componentType component type
+     * @return a key to obtain the bean with {@link #getBean(BeanKey)}
+     * @throws ResourceException if no bean is registered for the type
+     */
+    public <T> BeanKey<T> getKey(Class<T> componentType);
+
+    /**
+     * Obtain a key for the bean registered with the name <code>name</code>. The bean is not constructed.
+     * 
+     * @param name bean name
+     * @param componentType expected component type
+     * @return a key to obtain the bean with {@link #getBean(BeanKey)}
+     * @throws ResourceException if no bean is registered with the name or it is not an instance of <code>componentType</code>
+     */
+    public <T> BeanKey<T> getKey(String name, Class<T> componentType);
+
+    /**
+     * Obtain the bean of a key like {@link #getBean(String, Class)}. As the bean was resolved when the key was created, once
+     * the bean is started this is a read of the bean's slot.
+     * 
+     * @param key key created by this ResourceManager
+     * @return a bean instance
+     */
+    public <T> T getBean(BeanKey<T> key);
+
+    /**
+     * Obtain a bean instance registered for the type like {@link #getBean(Class)}, but return <code>null</code> if no bean
+     * is registered for the type. Unlike a failed {@link #getBean(Class)}, a miss does not create an exception nor take a lock,
+     * so the method suits probing for optional beans on a hot path.
+     * 
+     * <code>null</code> is also returned where {@link #getBean(Class)} would reject the lookup: if several beans are
+     * assignable to the type and none is bound to its name, if the bean is {@link Scope#Pooled} or if the
+     * ResourceManager, or the ancestor registering the bean, is shut down. The method only throws
+     * {@link ResourceException} if the bean or one of its dependencies cannot be constructed.
+     * 
+     * @param componentType component type
+     * @return a bean instance or <code>null</code>
+     */
+    public <T> T findBean(Class<T> componentType);
+
+    /**
+     * Obtain a bean instance registered with the name <code>name</code> like {@link #getBean(String, Class)}, but return
+     * <code>null</code> if no bean is registered with the name or the bean is not an instance of <code>componentType</code>.
+     * As for {@link #findBean(Class)}, pooled beans and beans of a shut down ResourceManager are answered with
+     * <code>null</code>, and the method only throws {@link ResourceException} if the bean cannot be constructed.
+     * 
+     * @param name bean name
+     * @param componentType expected component type
+     * @return a bean instance or <code>null</code>
+     */
+    public <T> T findBean(String name, Class<T> componentType);
+
+    /**
+     * Whether a bean is registered for the type, either with the type's name or as the type's subclass or implementation.
+     * The bean is not constructed.
+     * 
+     * @param componentType component type
+     * @return <code>true</code> if at least one bean is registered for the type
+     */
+    public boolean containsBean(Class<?> componentType);
+
+    /**
+     * Whether a bean is registered with the name <code>name</code>. The bean is not constructed.
+     * 
+     * @param name bean name
+     * @return <code>true</code> if a bean is registered with the name
+     */
+    public boolean containsBean(String name);
+
+    /**
+     * Obtain a {@link Provider} for the bean registered for the type. The bean is obtained with 
+     * {@link #getBean(Class)} each time {@link Provider#get()} is called, it is not required to be 
+     * registered when the provider is created.
+     * 
+     * If the bean is registered as a {@link Scope#Thread} bean, the provider returns the calling thread's instance without
+     * resolving the bean again, which is how thread beans are injected into singletons.
+     * 
+     * @param componentType component type
+     * @return a provider of the bean
+     */
+    public <T> Provider<T> getProvider(Class<T> componentType);
+
+    /**
+     * Obtain a {@link Provider} for the bean registered with name <code>name</code>. The bean is obtained with 
+     * {@link #getBean(String, Class)} each time {@link Provider#get()} is called, it is not required to be 
+     * registered when the provider is created.
+     * 
+     * @param name bean name
+     * @param componentType expected component type
+     * @return a provider of the bean
+     */
+    public <T> Provider<T> getProvider(String name, Class<T> componentType);
+
+    /**
+     * Obtain the pool of a {@link Scope#Pooled} bean registered for the type, following the same rules as
+     * {@link #getBean(Class)}. The method throws {@link ResourceException} if the bean is not pooled.
+     * 
+     * @param componentType component type
+     * @return the pool of the bean
+     */
+    public <T> BeanPool<T> getPool(Class<T> componentType);
+
+    /**
+     * Obtain the pool of a {@link Scope#Pooled} bean registered with the name <code>name</code>.
+     * 
+     * @param name bean name
+     * @param componentType expected component type
+     * @return the pool of the bean
+     */
+    public <T> BeanPool<T> getPool(String name, Class<T> componentType);
+
+    /**
+     * The state of the ResourceManager. The ResourceManager is in {@link State#Running} until the {@link #freeze()} or
+     * {@link #shutdown()} method is called.
      * 
      * @return the current state of the ResourceManager.
      */
@@ -209,9 +410,35 @@ public interface ResourceManager {
      */
     public void startAll();
 
+    /**
+     * Freeze the bindings of the ResourceManager. The registry is compiled into an immutable structure that is faster to
+     * read and smaller than the one maintained while binding, and the ResourceManager enters {@link State#Frozen}. Any later
+     * attempt to bind a bean throws {@link ResourceException}. Beans are obtained and shutdown as before.
+     * 
+     * The method is intended to be called once all the beans are bound, typically after {@link #startAll()}.
+     */
+    public void freeze();
+
+    /**
+     * Starts all the beans in the ResourceManager using <code>executor</code>. The dependency graph of the
+     * singleton beans and the beans they depend on is computed first, then beans are constructed as soon as
+     * all their dependencies exist. Beans that do not depend on each other are constructed concurrently.
+     * Prototype, pooled and thread beans no singleton depends on are not part of the graph, an invalid
+     * binding of such a bean only fails when the bean is obtained.
+     * 
+     * The method returns once all beans are constructed and started. If any bean fails, the remaining beans
+     * are not constructed and the first failure is thrown.
+     * 
+     * @param executor executor constructing the beans. If <code>null</code>, the beans are constructed in
+     * the calling thread. Beans the executor rejects are constructed in the calling thread as well.
+     */
+    public void startAll(Executor executor);
+
     /**
      * Shutdown the ResourceManager. For any bean that implements {@link LifeCycle} and is already started,
-     * the bean's {@link LifeCycle#onShutdown()} method is called.
+     * the bean's {@link LifeCycle#onShutdown()} method is called. Beans are shutdown in reverse dependency
+     * order, a bean is shutdown after all the beans depending on it. If a bean fails to shutdown, the
+     * remaining beans are still shutdown and a {@link ResourceException} is thrown afterwards.
      * Once this method is called, the ResourceManager is no longer functioning and all the bind/getBean 
      * methods will throw exception.
      */
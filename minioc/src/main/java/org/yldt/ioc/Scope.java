@@ -0,0 +1,49 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+/**
+ * Defines how many instances of a bean the ResourceManager creates.
+ * 
+ * @author Yun Liu
+ */
+public enum Scope {
+	/**
+	 * A single instance is created on first use and shared. This is the
+	 * default.
+	 */
+	Singleton,
+	/**
+	 * A new instance is created each time the bean is obtained or injected.
+	 * Prototype instances are started when created but never shutdown by the
+	 * ResourceManager.
+	 */
+	Prototype,
+	/**
+	 * Instances are borrowed from and returned to a bounded {@link BeanPool}.
+	 * Pooled instances are shutdown when evicted or when the ResourceManager
+	 * shuts down.
+	 */
+	Pooled,
+	/**
+	 * Each thread obtains its own instance, created the first time the thread
+	 * obtains the bean. The instance of a thread is shutdown after the thread
+	 * terminates, the others when the ResourceManager shuts down. Singleton and
+	 * pooled beans must inject a {@link Provider} or a lazy proxy of a thread
+	 * bean, which reads the calling thread's instance.
+	 */
+	Thread
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of shutting down the beans of an {@link ApplicationBeanManager}.
+ * Beans are keyed by bean name in the order their shutdown was attempted.
+ * 
+ * @author Yun Liu
+ */
+public final class ShutdownReport {
+	public static enum Outcome {
+		/** {@link LifeCycle#onShutdown()} returned normally. */
+		Completed,
+		/** {@link LifeCycle#onShutdown()} did not return within the timeout. */
+		TimedOut,
+		/** {@link LifeCycle#onShutdown()} threw an exception. */
+		Failed,
+		/** The deadline passed before the bean's shutdown was attempted. */
+		Skipped;
+	}
+
+	private final Map<String, Outcome> outcomes;
+	private final Map<String, Throwable> failures;
+	private final long durationNanos;
+
+	ShutdownReport(final Map<String, Outcome> outcomes,
+			final Map<String, Throwable> failures, final long durationNanos) {
+		this.outcomes = Collections.unmodifiableMap(outcomes);
+		this.failures = Collections.unmodifiableMap(failures);
+		this.durationNanos = durationNanos;
+	}
+
+	public Map<String, Outcome> getOutcomes() {
+		return outcomes;
+	}
+
+	/**
+	 * The exception thrown by each {@link Outcome#Failed} bean.
+	 */
+	public Map<String, Throwable> getFailures() {
+		return failures;
+	}
+
+	public long getDurationNanos() {
+		return durationNanos;
+	}
+
+	public List<String> getBeans(final Outcome outcome) {
+		final List<String> beans = new ArrayList<String>();
+		for (final Map.Entry<String, Outcome> entry : outcomes.entrySet())
+			if (entry.getValue() == outcome)
+				beans.add(entry.getKey());
+		return beans;
+	}
+
+	/**
+	 * @return <code>true</code> if every bean completed its shutdown.
+	 */
+	public boolean isClean() {
+		for (final Outcome outcome : outcomes.values())
+			if (outcome != Outcome.Completed)
+				return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "Shutdown took ["
+				+ TimeUnit.NANOSECONDS.toMillis(durationNanos)
+				+ "ms]. Completed " + getBeans(Outcome.Completed)
+				+ ", timed out " + getBeans(Outcome.TimedOut) + ", failed "
+				+ getBeans(Outcome.Failed) + ", skipped "
+				+ getBeans(Outcome.Skipped);
+	}
+}
@@ -0,0 +1,408 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Records how long the beans of an {@link ApplicationBeanManager} take to be
+ * constructed, injected and started. Profiling is enabled with
+ * {@link ApplicationBeanManager#setProfiler(StartupProfiler)}, without a
+ * profiler the ResourceManager does not read the clock.
+ * 
+ * The construction time of a bean includes the time spent obtaining its
+ * dependencies, which is also reported separately so that the bean's self
+ * time can be told apart from the time of the beans it waits for. This
+ * covers the dependencies constructed before the bean itself, those obtained
+ * for its injection points and those a {@link BeanFactory} or constructor
+ * obtains from the ResourceManager. The start time is the time spent in the
+ * bean's {@link LifeCycle#onStart()}.
+ * 
+ * @author Yun Liu
+ */
+public final class StartupProfiler {
+	public static enum Phase {
+		/** Creation by a {@link BeanFactory}, including injection. */
+		Factory,
+		/** Constructor call, including obtaining the constructor arguments. */
+		Instantiate,
+		FieldInjection,
+		MethodInjection,
+		Start
+	}
+
+	private final ConcurrentMap<String, BeanTiming> timings = new ConcurrentHashMap<String, BeanTiming>();
+	// beans under construction by the current thread, innermost last
+	private final ThreadLocal<LinkedList<Frame>> frames = new ThreadLocal<LinkedList<Frame>>() {
+		@Override
+		protected LinkedList<Frame> initialValue() {
+			return new LinkedList<Frame>();
+		}
+	};
+
+	// dependencies constructed for a bean about to be entered
+	private final ThreadLocal<Frame> preconstructed = new ThreadLocal<Frame>();
+
+	void enter(final String bean) {
+		final Frame pending = preconstructed.get();
+		final Frame frame;
+		if (pending != null) {
+			preconstructed.remove();
+			frame = pending.bean.equals(bean) ? pending : new Frame(bean,
+					System.nanoTime());
+		} else {
+			frame = new Frame(bean, System.nanoTime());
+		}
+		frames.get().addLast(frame);
+	}
+
+	void phase(final Phase phase, final long startNanos) {
+		final Frame frame = frames.get().peekLast();
+		if (frame != null)
+			frame.phases[phase.ordinal()] += System.nanoTime() - startNanos;
+	}
+
+	/**
+	 * Start obtaining a dependency of the bean under construction. Beans
+	 * constructed until the matching {@link #dependency(long)} are accounted
+	 * by it rather than when they exit.
+	 * 
+	 * @return the start time to pass to {@link #dependency(long)}
+	 */
+	long beginDependency() {
+		final Frame frame = frames.get().peekLast();
+		if (frame != null)
+			++frame.obtaining;
+		return System.nanoTime();
+	}
+
+	/**
+	 * Account the time spent obtaining a dependency of the bean under
+	 * construction.
+	 */
+	void dependency(final long startNanos) {
+		final Frame frame = frames.get().peekLast();
+		if (frame != null) {
+			--frame.obtaining;
+			frame.dependencyNanos += System.nanoTime() - startNanos;
+		}
+	}
+
+	/**
+	 * Account the dependencies constructed since <code>startNanos</code>,
+	 * obtained with {@link #beginDependency()}, to <code>bean</code> when it
+	 * is entered next. Its construction time then starts at
+	 * <code>startNanos</code>.
+	 */
+	void preconstructed(final String bean, final long startNanos) {
+		final long now = System.nanoTime();
+		final Frame frame = frames.get().peekLast();
+		if (frame != null)
+			--frame.obtaining;
+		final Frame pending = new Frame(bean, startNanos);
+		pending.dependencyNanos = now - startNanos;
+		preconstructed.set(pending);
+	}
+
+	/**
+	 * Drop the frame recorded by {@link #preconstructed(String, long)} unless
+	 * the bean was entered since.
+	 */
+	void discardPreconstructed() {
+		preconstructed.remove();
+	}
+
+	void exit() {
+		final LinkedList<Frame> stack = frames.get();
+		final Frame frame = stack.removeLast();
+		final long elapsed = System.nanoTime() - frame.startNanos;
+		// a bean constructed while its dependent is not obtaining a
+		// dependency, e.g. by a factory, is a dependency nonetheless
+		final Frame dependent = stack.peekLast();
+		if (dependent == null)
+			frames.remove();
+		else if (dependent.obtaining == 0)
+			dependent.dependencyNanos += elapsed;
+		timing(frame.bean).add(elapsed, frame.dependencyNanos, frame.phases);
+	}
+
+	void started(final String bean, final long startNanos) {
+		timing(bean).addStart(System.nanoTime() - startNanos);
+	}
+
+	private BeanTiming timing(final String bean) {
+		BeanTiming timing = timings.get(bean);
+		if (timing == null) {
+			final BeanTiming created = new BeanTiming(bean);
+			timing = timings.putIfAbsent(bean, created);
+			if (timing == null)
+				timing = created;
+		}
+		return timing;
+	}
+
+	/**
+	 * The timings recorded so far, slowest self time first.
+	 */
+	public List<BeanTiming> getTimings() {
+		final List<BeanTiming> sorted = new ArrayList<BeanTiming>();
+		for (final BeanTiming timing : timings.values())
+			sorted.add(timing.snapshot());
+		Collections.sort(sorted, new Comparator<BeanTiming>() {
+			public int compare(final BeanTiming a, final BeanTiming b) {
+				final long diff = b.getSelfNanos() - a.getSelfNanos();
+				return diff < 0 ? -1 : diff > 0 ? 1 : a.getName().compareTo(
+						b.getName());
+			}
+		});
+		return sorted;
+	}
+
+	public void clear() {
+		timings.clear();
+	}
+
+	/**
+	 * The timings as a text table in microseconds, slowest self time first.
+	 */
+	public String toTable() {
+		final StringBuilder table = new StringBuilder();
+		table.append(String.format("%-50s %6s %10s %10s %10s",
+				"bean", "count", "self(us)", "total(us)", "deps(us)"));
+		for (final Phase phase : Phase.values())
+			table.append(String.format(" %15s", phase));
+		table.append('\n');
+		for (final BeanTiming timing : getTimings()) {
+			table.append(String.format("%-50s %6d %10d %10d %10d",
+					timing.getName(), timing.getCount(),
+					micros(timing.getSelfNanos()),
+					micros(timing.getConstructionNanos()
+							+ timing.getPhaseNanos(Phase.Start)),
+					micros(timing.getDependencyNanos())));
+			for (final Phase phase : Phase.values())
+				table.append(String.format(" %15d",
+						micros(timing.getPhaseNanos(phase))));
+			table.append('\n');
+		}
+		return table.toString();
+	}
+
+	/**
+	 * The timings and the dependencies of the beans of <code>manager</code>
+	 * as a JSON document.
+	 */
+	public String toJson(final ApplicationBeanManager manager) {
+		final Map<String, List<String>> dependencies = dependencies(manager);
+		final StringBuilder json = new StringBuilder("{\"beans\":[");
+		boolean first = true;
+		for (final BeanTiming timing : getTimings()) {
+			if (!first)
+				json.append(',');
+			first = false;
+			json.append("{\"name\":").append(quote(timing.getName()));
+			json.append(",\"count\":").append(timing.getCount());
+			json.append(",\"selfNanos\":").append(timing.getSelfNanos());
+			json.append(",\"constructionNanos\":").append(
+					timing.getConstructionNanos());
+			json.append(",\"dependencyNanos\":").append(
+					timing.getDependencyNanos());
+			json.append(",\"phases\":{");
+			for (final Phase phase : Phase.values()) {
+				if (phase.ordinal() > 0)
+					json.append(',');
+				json.append(quote(phase.name())).append(':')
+						.append(timing.getPhaseNanos(phase));
+			}
+			json.append("},\"dependencies\":[");
+			final List<String> names = dependencies.get(timing.getName());
+			if (names != null)
+				for (int i = 0; i < names.size(); ++i)
+					json.append(i > 0 ? "," : "").append(quote(names.get(i)));
+			json.append("]}");
+		}
+		return json.append("]}").toString();
+	}
+
+	/**
+	 * The dependency graph of the beans of <code>manager</code> in the DOT
+	 * language, labelled with the recorded timings in microseconds.
+	 */
+	public String toDot(final ApplicationBeanManager manager) {
+		final StringBuilder dot = new StringBuilder("digraph startup {\n");
+		final Map<String, BeanTiming> byName = new LinkedHashMap<String, BeanTiming>();
+		for (final BeanTiming timing : getTimings())
+			byName.put(timing.getName(), timing);
+		for (final Map.Entry<String, List<String>> entry : dependencies(
+				manager).entrySet()) {
+			final BeanTiming timing = byName.get(entry.getKey());
+			dot.append("  ").append(quote(entry.getKey()));
+			if (timing != null)
+				dot.append(" [label=")
+						.append(quote(entry.getKey() + "\\nself "
+								+ micros(timing.getSelfNanos()) + "us, total "
+								+ micros(timing.getConstructionNanos()
+										+ timing.getPhaseNanos(Phase.Start))
+								+ "us")).append(']');
+			dot.append(";\n");
+			for (final String dependency : entry.getValue())
+				dot.append("  ").append(quote(entry.getKey())).append(" -> ")
+						.append(quote(dependency)).append(";\n");
+		}
+		return dot.append("}\n").toString();
+	}
+
+	private static Map<String, List<String>> dependencies(
+			final ApplicationBeanManager manager) {
+		final Map<String, List<String>> dependencies = new LinkedHashMap<String, List<String>>();
+		for (final Map.Entry<Resource, List<Resource>> entry : manager
+				.createDependencyGraph().getDependencies().entrySet()) {
+			final List<String> names = new ArrayList<String>();
+			for (final Resource dependency : entry.getValue())
+				names.add(dependency.getNames().get(0));
+			dependencies.put(entry.getKey().getNames().get(0), names);
+		}
+		return dependencies;
+	}
+
+	private static long micros(final long nanos) {
+		return nanos / 1000;
+	}
+
+	private static String quote(final String value) {
+		final StringBuilder quoted = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); ++i) {
+			final char c = value.charAt(i);
+			if (c == '"' || c == '\\')
+				quoted.append('\\');
+			quoted.append(c);
+		}
+		return quoted.append('"').toString();
+	}
+
+	private static final class Frame {
+		final String bean;
+		final long startNanos;
+		final long[] phases = new long[Phase.values().length];
+		long dependencyNanos;
+		// nesting of beginDependency() calls
+		int obtaining;
+
+		Frame(final String bean, final long startNanos) {
+			this.bean = bean;
+			this.startNanos = startNanos;
+		}
+	}
+
+	/**
+	 * The timings of a bean, summed over its instances.
+	 */
+	public static final class BeanTiming {
+		private final String name;
+		private int count;
+		private long constructionNanos;
+		private long dependencyNanos;
+		private final long[] phases = new long[Phase.values().length];
+
+		BeanTiming(final String name) {
+			this.name = name;
+		}
+
+		synchronized void add(final long construction, final long dependency,
+				final long[] phaseNanos) {
+			++count;
+			constructionNanos += construction;
+			dependencyNanos += dependency;
+			for (int i = 0; i < phaseNanos.length; ++i)
+				phases[i] += phaseNanos[i];
+		}
+
+		synchronized void addStart(final long nanos) {
+			phases[Phase.Start.ordinal()] += nanos;
+		}
+
+		synchronized BeanTiming snapshot() {
+			final BeanTiming copy = new BeanTiming(name);
+			copy.count = count;
+			copy.constructionNanos = constructionNanos;
+			copy.dependencyNanos = dependencyNanos;
+			System.arraycopy(phases, 0, copy.phases, 0, phases.length);
+			return copy;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * The number of instances constructed.
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * The construction and injection time, including the time spent
+		 * obtaining dependencies.
+		 */
+		public long getConstructionNanos() {
+			return constructionNanos;
+		}
+
+		/**
+		 * The time spent obtaining dependencies, constructing and starting
+		 * them if needed.
+		 */
+		public long getDependencyNanos() {
+			return dependencyNanos;
+		}
+
+		/**
+		 * The construction time excluding the dependencies, plus the start
+		 * time.
+		 */
+		public long getSelfNanos() {
+			return constructionNanos - dependencyNanos
+					+ phases[Phase.Start.ordinal()];
+		}
+
+		public long getPhaseNanos(final Phase phase) {
+			return phases[phase.ordinal()];
+		}
+
+		public Map<Phase, Long> getPhases() {
+			final Map<Phase, Long> map = new EnumMap<Phase, Long>(Phase.class);
+			for (final Phase phase : Phase.values())
+				map.put(phase, phases[phase.ordinal()]);
+			return map;
+		}
+
+		@Override
+		public String toString() {
+			return name + ": self " + getSelfNanos() + "ns, construction "
+					+ constructionNanos + "ns, dependencies "
+					+ dependencyNanos + "ns, " + getPhases();
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of {@link ApplicationBeanManager#startInWaves(java.util.concurrent.Executor)}.
+ * Durations are in nanoseconds.
+ * 
+ * The critical path is the chain of dependent beans whose {@link LifeCycle#onStart()}
+ * durations add up to the largest total. No schedule can start all the beans faster
+ * than the critical path, so these are the beans to optimize first.
+ * 
+ * @author Yun Liu
+ */
+public final class StartupReport {
+	private final long constructionNanos;
+	private final long startNanos;
+	private final int waves;
+	private final Map<String, Long> startDurations;
+	private final List<String> criticalPath;
+	private final long criticalPathNanos;
+
+	StartupReport(final long constructionNanos, final long startNanos,
+			final int waves, final Map<String, Long> startDurations,
+			final List<String> criticalPath, final long criticalPathNanos) {
+		this.constructionNanos = constructionNanos;
+		this.startNanos = startNanos;
+		this.waves = waves;
+		this.startDurations = Collections.unmodifiableMap(startDurations);
+		this.criticalPath = Collections.unmodifiableList(criticalPath);
+		this.criticalPathNanos = criticalPathNanos;
+	}
+
+	/**
+	 * Time spent constructing and injecting all the beans.
+	 */
+	public long getConstructionNanos() {
+		return constructionNanos;
+	}
+
+	/**
+	 * Time spent running all the start waves.
+	 */
+	public long getStartNanos() {
+		return startNanos;
+	}
+
+	public int getWaves() {
+		return waves;
+	}
+
+	/**
+	 * The time spent starting each bean, keyed by bean name, in start order.
+	 */
+	public Map<String, Long> getStartDurations() {
+		return startDurations;
+	}
+
+	/**
+	 * Names of the beans on the critical path, dependencies first.
+	 */
+	public List<String> getCriticalPath() {
+		return criticalPath;
+	}
+
+	public long getCriticalPathNanos() {
+		return criticalPathNanos;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("Constructed beans in [")
+				.append(TimeUnit.NANOSECONDS.toMillis(constructionNanos))
+				.append("ms], started in [").append(waves)
+				.append("] waves in [")
+				.append(TimeUnit.NANOSECONDS.toMillis(startNanos))
+				.append("ms]. Critical path [")
+				.append(TimeUnit.NANOSECONDS.toMillis(criticalPathNanos))
+				.append("ms]:");
+		for (final String name : criticalPath)
+			builder.append("\n\t").append(name).append(" [")
+					.append(TimeUnit.NANOSECONDS.toMicros(startDurations
+							.get(name))).append("us]");
+		return builder.toString();
+	}
+}
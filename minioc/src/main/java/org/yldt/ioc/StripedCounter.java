@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter spreading its updates over several cells, one per group of
+ * threads, so that threads updating it concurrently do not contend on a
+ * single value. Reading it sums the cells.
+ * 
+ * @author Yun Liu
+ */
+final class StripedCounter {
+	private static final int STRIPES = stripes();
+	// cells are spaced a cache line apart so that stripes do not share one
+	private static final int SPACING = 8;
+	private final AtomicLongArray cells = new AtomicLongArray(STRIPES * SPACING);
+
+	void increment() {
+		add(1);
+	}
+
+	void add(final long value) {
+		cells.getAndAdd(cell(), value);
+	}
+
+	long sum() {
+		long sum = 0;
+		for (int i = 0; i < STRIPES; i++)
+			sum += cells.get(i * SPACING);
+		return sum;
+	}
+
+	void reset() {
+		for (int i = 0; i < STRIPES; i++)
+			cells.set(i * SPACING, 0);
+	}
+
+	private static int cell() {
+		final long id = Thread.currentThread().getId();
+		return (int) ((id ^ (id >>> 16)) & (STRIPES - 1)) * SPACING;
+	}
+
+	private static int stripes() {
+		final int processors = Runtime.getRuntime().availableProcessors();
+		int stripes = 1;
+		while (stripes < processors && stripes < 64)
+			stripes <<= 1;
+		return stripes;
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.yldt.logging.LogManager;
+import org.yldt.logging.Logger;
+
+/**
+ * Instances of a {@link Scope#Thread} resource. Once a thread obtained its
+ * instance, obtaining it again is a read of a thread local, without locking.
+ * 
+ * The instances of threads that terminated are shutdown and released the next
+ * time a thread creates its instance, so that thread pools replacing their
+ * threads do not accumulate instances. The remaining instances are shutdown
+ * when the scope is closed.
+ * 
+ * @author Yun Liu
+ */
+final class ThreadScope<T> implements Provider<T> {
+	private static final Logger logger = LogManager
+			.getLogger(ThreadScope.class);
+	private final String name;
+	private final ThreadLocal<T> instance = new ThreadLocal<T>();
+	// the instance of each thread that obtained one and did not terminate
+	private final Queue<Owned<T>> instances = new ConcurrentLinkedQueue<Owned<T>>();
+	private final Provider<T> creator;
+	private volatile boolean closed;
+
+	/**
+	 * @param creator creates a new instance each time it is called.
+	 */
+	public ThreadScope(final String name, final Provider<T> creator) {
+		this.name = name;
+		this.creator = creator;
+	}
+
+	public T get() {
+		if (closed)
+			throw new ResourceException("Bean [" + name + "] is shutdown");
+		T object = instance.get();
+		if (object == null) {
+			object = creator.get();
+			instance.set(object);
+			releaseTerminated();
+			instances.add(new Owned<T>(Thread.currentThread(), object));
+			// the instance may have been created while closing
+			if (closed) {
+				close();
+				throw new ResourceException("Bean [" + name + "] is shutdown");
+			}
+		}
+		return object;
+	}
+
+	/**
+	 * Shutdown and forget the instances of the threads that terminated.
+	 */
+	private void releaseTerminated() {
+		for (final Iterator<Owned<T>> i = instances.iterator(); i.hasNext();) {
+			final Owned<T> owned = i.next();
+			final Thread owner = owned.owner.get();
+			// only the thread removing the instance shuts it down
+			if ((owner == null || !owner.isAlive()) && instances.remove(owned))
+				shutdown(owned.object);
+		}
+	}
+
+	/**
+	 * Shutdown the instances of all threads. The threads still referencing
+	 * their instance release it when they terminate.
+	 */
+	public void close() {
+		closed = true;
+		instance.remove();
+		Owned<T> owned;
+		while ((owned = instances.poll()) != null)
+			shutdown(owned.object);
+	}
+
+	/**
+	 * The number of instances held for live or not yet released threads.
+	 */
+	int size() {
+		return instances.size();
+	}
+
+	private void shutdown(final T object) {
+		if (!(object instanceof LifeCycle))
+			return;
+		if (logger.isDebugEnabled())
+			logger.debug("Shutting down thread instance [" + object
+					+ "] of bean [" + name + "]");
+		try {
+			((LifeCycle) object).onShutdown();
+		} catch (final RuntimeException e) {
+			logger.error("Failed to shutdown thread instance of bean ["
+					+ name + "]", e);
+		}
+	}
+
+	/**
+	 * An instance with the thread it was created for, referenced weakly so
+	 * that the scope does not keep terminated threads reachable.
+	 */
+	private static final class Owned<T> {
+		private final WeakReference<Thread> owner;
+		private final T object;
+
+		Owned(final Thread owner, final T object) {
+			this.owner = new WeakReference<Thread>(owner);
+			this.object = object;
+		}
+	}
+}
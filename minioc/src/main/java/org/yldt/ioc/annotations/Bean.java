@@ -21,6 +21,8 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+import org.yldt.ioc.Scope;
+
 /**
  * Annotation used to name a bean or to signal a type should be treated as a
  * component that can be maintained by the ResourceManager.
@@ -32,4 +34,20 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Bean {
 	public String[] name() default {};
+
+	/**
+	 * The scope of the bean, unless another scope is given when binding it.
+	 */
+	public Scope scope() default Scope.Singleton;
+
+	/**
+	 * The maximum number of instances of a {@link Scope#Pooled} bean.
+	 */
+	public int poolSize() default 8;
+
+	/**
+	 * The time in milliseconds after which an idle instance of a
+	 * {@link Scope#Pooled} bean is evicted.
+	 */
+	public long maxIdleMillis() default 60000;
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationTargetException;
+
+import org.junit.Test;
+import org.yldt.ioc.InjectionPlan.FieldInjection;
+import org.yldt.ioc.InjectionPlan.MethodInjection;
+
+/**
+ * 
+ * @author Yun Liu
+ *
+ */
+public class AccessorsTest {
+
+    @Test
+    public void testReflectionAccessors() throws Exception {
+        verify(Accessors.REFLECTION);
+    }
+
+    @Test
+    public void testMethodHandleAccessors() throws Exception {
+        verify(Accessors.METHOD_HANDLES);
+    }
+
+    @Test
+    public void testContainerAccessorStrategy() throws Exception {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        assertTrue(manager.getAccessorStrategy() == Accessors.getDefaultStrategy());
+        manager.setAccessorStrategy(AccessorStrategy.Reflection);
+        ApplicationBeanManager child = manager.createChild();
+        assertTrue(child.getAccessorStrategy() == AccessorStrategy.Reflection);
+        manager.bind(SimpleClass.class);
+        manager.bind(MoreComplicatedClass.class);
+        manager.bind(FieldAndMethodInjectionBean.class);
+        assertTrue(manager.getBean(MoreComplicatedClass.class).getSimpleClass() == manager.getBean(SimpleClass.class));
+        FieldAndMethodInjectionBean bean = manager.getBean(FieldAndMethodInjectionBean.class);
+        assertTrue(bean.simpleClass == manager.getBean(SimpleClass.class));
+        assertTrue(bean.injectWithMethod == manager.getBean(SimpleClass.class));
+        // each strategy has its own plans
+        assertTrue(InjectionPlan.forType(SimpleClass.class, AccessorStrategy.Reflection) != InjectionPlan.forType(
+                SimpleClass.class, AccessorStrategy.MethodHandles));
+    }
+
+    public static class FailingBean {
+        public FailingBean(SimpleClass simpleClass) {
+            throw new IllegalStateException("failing constructor");
+        }
+    }
+
+    @Test
+    public void testReflectionFailures() throws Exception {
+        verifyFailures(Accessors.REFLECTION);
+    }
+
+    @Test
+    public void testMethodHandleFailures() throws Exception {
+        verifyFailures(Accessors.METHOD_HANDLES);
+    }
+
+    private void verifyFailures(Accessors accessors) throws Exception {
+        try {
+            accessors.instantiator(FailingBean.class.getConstructors()[0]).newInstance(
+                    new Object[] { new SimpleClass(null) });
+            fail("Expect InvocationTargetException");
+        } catch (InvocationTargetException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        try {
+            accessors.instantiator(MoreComplicatedClass.class.getConstructors()[0]).newInstance(
+                    new Object[] { "not a SimpleClass" });
+            fail("Expect an argument type failure");
+        } catch (InvocationTargetException e) {
+            fail("An argument of the wrong type is not thrown by the constructor");
+        } catch (RuntimeException e) {
+            // IllegalArgumentException from reflection, ClassCastException from method handles
+            assertTrue(e instanceof IllegalArgumentException || e instanceof ClassCastException);
+        }
+    }
+
+    private void verify(Accessors accessors) throws Exception {
+        SimpleClass simpleClass = new SimpleClass(null);
+        MoreComplicatedClass created = (MoreComplicatedClass) accessors.instantiator(
+                MoreComplicatedClass.class.getConstructors()[0]).newInstance(new Object[] { simpleClass });
+        assertTrue(created.getSimpleClass() == simpleClass);
+
+        InjectionPlan plan = InjectionPlan.forType(FieldAndMethodInjectionBean.class);
+        FieldAndMethodInjectionBean bean = new FieldAndMethodInjectionBean();
+        FieldInjection field = plan.getFields()[0];
+        accessors.fieldSetter(field.getField()).set(bean, simpleClass);
+        MethodInjection method = plan.getMethods()[0];
+        accessors.methodInvoker(method.getMethod()).invoke(bean, new Object[] { simpleClass });
+        assertTrue(bean.simpleClass == simpleClass);
+        assertTrue(bean.injectWithMethod == simpleClass);
+    }
+}
@@ -18,8 +18,16 @@ package org.yldt.ioc;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -140,4 +148,801 @@ public class ApplicationBeanManagerTest {
         assertTrue(bean.injectWithMethod == toBeInjected);
         assertTrue(toBeInjected != null);
     }
+
+    @Test
+    public void testConcurrentGetBeanReturnsSameInstance() throws Exception
+    {
+        final ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bind(SimpleClass.class);
+        manager.bind(MoreComplicatedClass.class);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try
+        {
+            final List<Future<MoreComplicatedClass>> futures = new ArrayList<Future<MoreComplicatedClass>>();
+            for (int i = 0; i < 32; ++i)
+                futures.add(executor.submit(new Callable<MoreComplicatedClass>() {
+                    public MoreComplicatedClass call() throws Exception {
+                        latch.await();
+                        return manager.getBean(MoreComplicatedClass.class);
+                    }
+                }));
+            latch.countDown();
+            final MoreComplicatedClass expected = manager.getBean(MoreComplicatedClass.class);
+            for (final Future<MoreComplicatedClass> future : futures)
+                assertTrue(expected == future.get());
+        } finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCyclicDependencyDetected()
+    {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bind(CyclicBeanA.class);
+        manager.bind(CyclicBeanB.class);
+        try
+        {
+            manager.getBean(CyclicBeanA.class);
+            fail("Expect cyclic dependency error");
+        } catch (ResourceException e)
+        {
+            String a = CyclicBeanA.class.getName();
+            String b = CyclicBeanB.class.getName();
+            assertTrue(e.getMessage(), e.getMessage().contains("[" + a + "] -> [" + b + "] -> [" + a + "]"));
+        }
+    }
+
+    @Test
+    public void testSlowBeanDoesNotBlockUnrelatedBean() throws Exception
+    {
+        final ApplicationBeanManager manager = new ApplicationBeanManager();
+        final BlockingStartBean blocking = new BlockingStartBean();
+        manager.bindObject(blocking);
+        manager.bind(SimpleClass.class);
+        final Thread starter = new Thread(new Runnable() {
+            public void run() {
+                manager.getBean(BlockingStartBean.class);
+            }
+        });
+        starter.start();
+        try
+        {
+            blocking.awaitStarting();
+            assertTrue(manager.getBean(SimpleClass.class) != null);
+        } finally
+        {
+            blocking.release();
+            starter.join();
+        }
+    }
+
+    @Test
+    public void testBindFactory()
+    {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bind(SimpleClass.class);
+        manager.bindFactory(MoreComplicatedClass.class, new BeanFactory<MoreComplicatedClass>() {
+            public MoreComplicatedClass create(ResourceManager manager) {
+                return new MoreComplicatedClass(manager.getBean(SimpleClass.class));
+            }
+        });
+        MoreComplicatedClass bean = manager.getBean(MoreComplicatedClass.class);
+        assertTrue(bean == manager.getBean(MoreComplicatedClass.class));
+        assertTrue(bean.getSimpleClass() == manager.getBean(SimpleClass.class));
+    }
+
+    @Test
+    public void testBindFactoryWithScopeAndNames()
+    {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bindFactory(SimpleClass.class, new BeanFactory<SimpleClass>() {
+            public SimpleClass create(ResourceManager manager) {
+                return new SimpleClass(null);
+            }
+        }, Scope.Prototype, "first", "second");
+        Assert.assertFalse(manager.containsBean(SimpleClass.class.getName()));
+        assertTrue(manager.getBean("first", SimpleClass.class) != manager.getBean("second", SimpleClass.class));
+    }
+
+    @Test
+    public void testFactoryFailuresReported()
+    {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bindObject(new ArrayList<String>(), "events");
+        manager.bind(ThreadBean.class);
+        manager.bindFactory(ThreadInjectedBean.class, new DependentBeanFactory<ThreadInjectedBean>() {
+            public ThreadInjectedBean create(ResourceManager manager) {
+                throw new UnsupportedOperationException();
+            }
+
+            public Class<?>[] getDependencyTypes() {
+                return new Class<?>[] { ThreadBean.class };
+            }
+
+            public String[] getDependencyNames() {
+                return new String[] { null };
+            }
+        });
+        try
+        {
+            manager.getBean(ThreadInjectedBean.class);
+            fail("Expect ResourceException for a thread bean declared by a singleton factory");
+        } catch (ResourceException e)
+        {
+            assertTrue(e.getMessage(), e.getMessage().contains("Provider"));
+        }
+
+        manager.bindFactory(MoreComplicatedClass.class, new BeanFactory<MoreComplicatedClass>() {
+            public MoreComplicatedClass create(ResourceManager manager) {
+                return new MoreComplicatedClass(manager.getBean(SimpleClass.class));
+            }
+        });
+        try
+        {
+            manager.getBean(MoreComplicatedClass.class);
+            fail("Expect UnsatisfiedDependencyException for a missing dependency");
+        } catch (UnsatisfiedDependencyException e)
+        {
+            assertTrue(e.getMessage(), e.getMessage().contains(MoreComplicatedClass.class.getName()));
+        }
+
+        manager.bindFactory(SimpleClass.class, new BeanFactory<SimpleClass>() {
+            public SimpleClass create(ResourceManager manager) {
+                throw new IllegalStateException("failing factory");
+            }
+        });
+        try
+        {
+            manager.getBean(SimpleClass.class);
+            fail("Expect ResourceException for a failing factory");
+        } catch (UnsatisfiedDependencyException e)
+        {
+            fail("A failing factory is not an unsatisfied dependency");
+        } catch (ResourceException e)
+        {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testProviderAndLazyInjection()
+    {
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bindObject(events, "events");
+        manager.bind(WaveDependencyBean.class);
+        manager.bind(ProviderInjectionBean.class);
+        ProviderInjectionBean bean = manager.getBean(ProviderInjectionBean.class);
+        assertTrue("Expect deferred dependency not constructed", events.isEmpty());
+
+        bean.lazy.onShutdown();
+        Assert.assertEquals(Arrays.asList("construct dependency", "start dependency", "shutdown dependency"),
+                events);
+        assertTrue(bean.provider.get() == manager.getBean(WaveDependencyBean.class));
+    }
+
+    @Test
+    public void testTypeLookupAfterLateBinding()
+    {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        try
+        {
+            manager.getBean(SimpleClass.class);
+            fail("Expect ResourceException");
+        } catch (ResourceException e)
+        {
+            // pass
+        }
+        manager.bind(SimpleClass.class);
+        SimpleClass bean = manager.getBean(SimpleClass.class);
+        assertTrue(bean == manager.getBean(SimpleClass.class));
+        assertTrue(bean == manager.getBean(SimpleClass.class.getName(), SimpleClass.class));
+    }
+
+    @Test
+    public void testLookupByAssignableType() throws Exception
+    {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bind(ApiTestBean.class);
+        ApiTestBean bean = manager.getBean(ApiTestBean.class);
+        assertTrue(bean == manager.getBean(Runnable.class));
+        assertTrue(bean == manager.getBean(Callable.class));
+        assertTrue(manager == manager.getBean(ApplicationBeanManager.class));
+
+        Runnable other = new Runnable()
+        {
+            public void run()
+            {
+            }
+        };
+        manager.bindObject(other, "other");
+        try
+        {
+            manager.getBean(Runnable.class);
+            fail("Expect ResourceException for an ambiguous type");
+        } catch (ResourceException e)
+        {
+            // pass
+        }
+        assertTrue(bean == manager.getBean(Callable.class));
+
+        manager.bindObject(other, "selected", Runnable.class.getName());
+        assertTrue(other == manager.getBean(Runnable.class));
+    }
+
+    @Test
+    public void testManyBeansSharingType() throws Exception
+    {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bind(ApiTestBean.class);
+        ApiTestBean bean = manager.getBean(ApiTestBean.class);
+        assertTrue(bean == manager.getBean(Callable.class));
+        List<Runnable> runnables = new ArrayList<Runnable>();
+        for (int i = 0; i < 2000; ++i)
+        {
+            Runnable runnable = new Runnable()
+            {
+                public void run()
+                {
+                }
+            };
+            runnables.add(runnable);
+            manager.bindObject(runnable, "runnable" + i);
+        }
+        for (int i = 0; i < runnables.size(); ++i)
+            assertTrue(runnables.get(i) == manager.getBean("runnable" + i, Runnable.class));
+        try
+        {
+            manager.getBean(Runnable.class);
+            fail("Expect ResourceException for an ambiguous type");
+        } catch (ResourceException e)
+        {
+            assertTrue(e.getMessage(), e.getMessage().contains("runnable1999"));
+        }
+        // the cached lookup of an unrelated type survives, unless its name is bound
+        assertTrue(bean == manager.getBean(Callable.class));
+        manager.bindObject(runnables.get(0), Callable.class.getName());
+        try
+        {
+            manager.getBean(Callable.class);
+            fail("Expect ResourceException for a bean of another type");
+        } catch (ResourceException e)
+        {
+            // pass
+        }
+    }
+
+    @Test
+    public void testPrototypeScope()
+    {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bind(SimpleClass.class);
+        manager.bind(PrototypeBean.class);
+        PrototypeBean first = manager.getBean(PrototypeBean.class);
+        PrototypeBean second = manager.getBean(PrototypeBean.class);
+        assertTrue(first != second);
+        assertTrue(first.getSimpleClass() == second.getSimpleClass());
+
+        manager.bind(ApiTestBean.class, Scope.Prototype);
+        assertTrue(manager.getBean(ApiTestBean.class) != manager.getBean(ApiTestBean.class));
+        manager.startAll();
+    }
+
+    @Test
+    public void testPooledScope() throws Exception
+    {
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bindObject(events, "events");
+        manager.bind(SimpleClass.class);
+        manager.bind(PooledBean.class);
+        try
+        {
+            manager.getBean(PooledBean.class);
+            fail("Expect ResourceException for a pooled bean");
+        } catch (ResourceException e)
+        {
+            // pass
+        }
+
+        BeanPool<PooledBean> pool = manager.getPool(PooledBean.class);
+        Assert.assertEquals(2, pool.getMaxSize());
+        PooledBean first = pool.borrow();
+        PooledBean second = pool.borrow();
+        assertTrue(first != second);
+        assertTrue(first.getSimpleClass() == manager.getBean(SimpleClass.class));
+        Assert.assertNull("Expect pool exhausted", pool.borrow(10, TimeUnit.MILLISECONDS));
+
+        pool.release(second);
+        assertTrue(second == pool.borrow());
+        pool.release(second);
+        try
+        {
+            pool.release(second);
+            fail("Expect ResourceException for an instance returned twice");
+        } catch (ResourceException e)
+        {
+            // pass
+        }
+        Assert.assertEquals(2, pool.getSize());
+
+        manager.shutdown();
+        Assert.assertEquals(Arrays.asList("start pooled", "start pooled", "shutdown pooled"), events);
+        pool.release(first);
+        Assert.assertEquals(0, pool.getSize());
+        Assert.assertEquals("shutdown pooled", events.get(events.size() - 1));
+    }
+
+    @Test
+    public void testPooledIdleEviction() throws Exception
+    {
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bindObject(events, "events");
+        manager.bind(SimpleClass.class);
+        manager.bindPool(PooledBean.class, 1, 1, TimeUnit.MILLISECONDS);
+        BeanPool<PooledBean> pool = manager.getPool(PooledBean.class);
+        PooledBean first = pool.borrow();
+        pool.release(first);
+        Thread.sleep(20);
+        PooledBean second = pool.borrow();
+        assertTrue("Expect idle instance evicted", first != second);
+        Assert.assertEquals(Arrays.asList("start pooled", "shutdown pooled", "start pooled"), events);
+        Assert.assertEquals(1, pool.getSize());
+    }
+
+    @Test
+    public void testThreadScopeReleasesTerminatedThreads() throws Exception
+    {
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        final ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bindObject(events, "events");
+        manager.bind(ThreadBean.class);
+        Thread retired = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                manager.getBean(ThreadBean.class);
+            }
+        }, "retired");
+        retired.start();
+        retired.join();
+        assertTrue(!events.contains("shutdown retired"));
+
+        // creating the instance of another thread releases the retired one
+        manager.getBean(ThreadBean.class);
+        assertTrue(events.contains("shutdown retired"));
+        manager.shutdown();
+        Assert.assertEquals(1, Collections.frequency(events, "shutdown retired"));
+    }
+
+    @Test
+    public void testThreadBeanInjectedIntoSingletonRejected()
+    {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bindObject(new ArrayList<String>(), "events");
+        manager.bind(ThreadBean.class);
+        manager.bind(ThreadInjectedBean.class);
+        try
+        {
+            manager.getBean(ThreadInjectedBean.class);
+            fail("Expect ResourceException for a thread bean injected into a singleton");
+        } catch (ResourceException e)
+        {
+            assertTrue(e.getMessage(), e.getMessage().contains("Provider"));
+        }
+    }
+
+    @Test
+    public void testThreadScope() throws Exception
+    {
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        final ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bindObject(events, "events");
+        manager.bind(ThreadBean.class);
+        final Provider<ThreadBean> provider = manager.getProvider(ThreadBean.class);
+        ThreadBean bean = manager.getBean(ThreadBean.class);
+        assertTrue(bean == manager.getBean(ThreadBean.class));
+        assertTrue(bean == provider.get());
+        assertTrue(bean.getThread() == Thread.currentThread());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            ThreadBean other = executor.submit(new Callable<ThreadBean>()
+            {
+                public ThreadBean call()
+                {
+                    return provider.get();
+                }
+            }).get();
+            assertTrue(other != bean);
+            assertTrue(other.getThread() != Thread.currentThread());
+        } finally
+        {
+            executor.shutdown();
+        }
+
+        manager.shutdown();
+        Assert.assertEquals(4, events.size());
+        assertTrue(events.contains("shutdown " + Thread.currentThread().getName()));
+        try
+        {
+            provider.get();
+            fail("Expect ResourceException after shutdown");
+        } catch (ResourceException e)
+        {
+            // pass
+        }
+    }
+
+    @Test
+    public void testFindBean()
+    {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        Assert.assertNull(manager.findBean(SimpleClass.class));
+        Assert.assertNull(manager.findBean("simple", SimpleClass.class));
+        Assert.assertFalse(manager.containsBean(SimpleClass.class));
+        Assert.assertFalse(manager.containsBean(SimpleClass.class.getName()));
+
+        manager.bind(SimpleClass.class);
+        manager.bind(ApiTestBean.class);
+        assertTrue(manager.containsBean(SimpleClass.class));
+        assertTrue(manager.containsBean(Runnable.class));
+        assertTrue(manager.containsBean(SimpleClass.class.getName()));
+        SimpleClass bean = manager.findBean(SimpleClass.class);
+        assertTrue(bean == manager.getBean(SimpleClass.class));
+        assertTrue(bean == manager.findBean(SimpleClass.class.getName(), SimpleClass.class));
+        Assert.assertNull(manager.findBean(SimpleClass.class.getName(), Runnable.class));
+        assertTrue(manager.findBean(Runnable.class) == manager.getBean(ApiTestBean.class));
+    }
+
+    @Test
+    public void testFindBeanReturnsNullWhereGetBeanRejects()
+    {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bindObject(new ArrayList<String>(), "first");
+        manager.bindObject(new ArrayList<String>(), "second");
+        try
+        {
+            manager.getBean(List.class);
+            fail("Expect ResourceException for an ambiguous type");
+        } catch (ResourceException e)
+        {
+            // pass
+        }
+        Assert.assertNull(manager.findBean(List.class));
+        assertTrue(manager.findBean("first", List.class) == manager.getBean("first", List.class));
+
+        manager.bindObject(Collections.synchronizedList(new ArrayList<String>()), "events");
+        manager.bind(SimpleClass.class);
+        manager.bind(PooledBean.class);
+        Assert.assertNull(manager.findBean(PooledBean.class));
+        Assert.assertNull(manager.findBean(PooledBean.class.getName(), PooledBean.class));
+
+        ApplicationBeanManager child = manager.createChild();
+        manager.shutdown();
+        Assert.assertNull(manager.findBean(SimpleClass.class));
+        Assert.assertNull(manager.findBean("first", List.class));
+        Assert.assertNull(child.findBean(SimpleClass.class));
+    }
+
+    @Test
+    public void testBatchBindings()
+    {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bindings()
+                .bind(SimpleClass.class)
+                .bind(MoreComplicatedClass.class)
+                .bind(ApiTestBean.class, Runnable.class)
+                .bindObject("value", "string")
+                .commit();
+        MoreComplicatedClass bean = manager.getBean(MoreComplicatedClass.class);
+        assertTrue(bean.getSimpleClass() == manager.getBean(SimpleClass.class));
+        assertTrue(manager.getBean(Runnable.class) instanceof ApiTestBean);
+        Assert.assertEquals("value", manager.getBean("string", String.class));
+    }
+
+    @Test
+    public void testFailedBatchLeavesRegistryUntouched()
+    {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bind(SimpleClass.class);
+        Bindings duplicate = manager.bindings()
+                .bind(ApiTestBean.class)
+                .bindObject("value", "string")
+                .bindObject("other", "string");
+        try
+        {
+            duplicate.commit();
+            fail("Expect ResourceException for a name bound twice in the batch");
+        } catch (ResourceException e)
+        {
+            // pass
+        }
+        Bindings conflicting = manager.bindings()
+                .bind(ApiTestBean.class)
+                .bind(SimpleClass.class);
+        try
+        {
+            conflicting.commit();
+            fail("Expect ResourceException for a name already registered");
+        } catch (ResourceException e)
+        {
+            // pass
+        }
+        Bindings invalid = manager.bindings()
+                .bind(ApiTestBean.class)
+                .bind(SimpleClass.class, Runnable.class);
+        try
+        {
+            invalid.commit();
+            fail("Expect IllegalArgumentException for a type not implementing the interface");
+        } catch (IllegalArgumentException e)
+        {
+            // pass
+        }
+        Assert.assertFalse(manager.containsBean(ApiTestBean.class));
+        Assert.assertFalse(manager.containsBean("string"));
+        Assert.assertFalse(manager.containsBean(Runnable.class));
+
+        // a failed batch is cleared, retrying registers only the new bindings
+        conflicting.bind(ApiTestBean.class).commit();
+        assertTrue(manager.containsBean(ApiTestBean.class));
+    }
+
+    @Test
+    public void testFreeze()
+    {
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bindObject(events, "events");
+        manager.bind(SimpleClass.class);
+        manager.bind(MoreComplicatedClass.class);
+        manager.bind(ApiTestBean.class);
+        manager.bind(WaveDependencyBean.class);
+        manager.bindObject(new Runnable()
+        {
+            public void run()
+            {
+            }
+        }, "otherRunnable");
+        manager.bind(PrototypeBean.class);
+        SimpleClass simple = manager.getBean(SimpleClass.class);
+        manager.freeze();
+        Assert.assertEquals(ResourceManager.State.Frozen, manager.getState());
+
+        assertTrue(simple == manager.getBean(SimpleClass.class));
+        assertTrue(simple == manager.getBean(SimpleClass.class.getName(), SimpleClass.class));
+        assertTrue(manager == manager.getBean(ResourceManager.class));
+        assertTrue(manager.getBean(MoreComplicatedClass.class).getSimpleClass() == simple);
+        assertTrue(manager.getBean(Callable.class) == manager.getBean(ApiTestBean.class));
+        assertTrue(manager.getBean(PrototypeBean.class) != manager.getBean(PrototypeBean.class));
+        assertTrue(manager.containsBean(Callable.class));
+        assertTrue(manager.containsBean("otherRunnable"));
+        Assert.assertFalse(manager.containsBean(CyclicBeanA.class));
+        Assert.assertNull(manager.findBean("missing", Object.class));
+        try
+        {
+            manager.getBean(Runnable.class);
+            fail("Expect ResourceException for an ambiguous type");
+        } catch (ResourceException e)
+        {
+            // pass
+        }
+        try
+        {
+            manager.bind(CyclicBeanA.class);
+            fail("Expect ResourceException when binding a frozen ResourceManager");
+        } catch (ResourceException e)
+        {
+            // pass
+        }
+
+        manager.startAll();
+        manager.shutdown();
+        Assert.assertEquals(Arrays.asList("construct dependency", "start dependency", "shutdown dependency"),
+                events);
+    }
+
+    @Test
+    public void testFreezeReleasesBindingMaps() throws Exception
+    {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        int count = 50000;
+        for (int i = 0; i < count; ++i)
+        {
+            manager.bindObject(new Runnable()
+            {
+                public void run()
+                {
+                }
+            }, "runnable" + i);
+        }
+        long binding = usedHeap();
+        manager.freeze();
+        long frozen = usedHeap();
+        // the maps and candidate lists of the bindings take more than 16
+        // bytes per bean beyond the frozen tables
+        assertTrue("binding " + binding + " frozen " + frozen, binding - frozen > count * 16L);
+        assertTrue(manager.containsBean("runnable" + (count - 1)));
+    }
+
+    private static long usedHeap() throws InterruptedException
+    {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; ++i)
+        {
+            System.gc();
+            Thread.sleep(20);
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    @Test
+    public void testBeanKey()
+    {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bind(SimpleClass.class);
+        manager.bind(PrototypeBean.class);
+        BeanKey<SimpleClass> key = manager.getKey(SimpleClass.class);
+        Assert.assertEquals(SimpleClass.class.getName(), key.getName());
+        SimpleClass bean = manager.getBean(key);
+        assertTrue(bean == manager.getBean(SimpleClass.class));
+        assertTrue(bean == manager.getBean(key));
+
+        for (int i = 0; i < 20; ++i)
+            manager.bindObject(Integer.valueOf(i), "value" + i);
+        BeanKey<Integer> valueKey = manager.getKey("value17", Integer.class);
+        Assert.assertEquals(Integer.valueOf(17), manager.getBean(valueKey));
+        assertTrue(bean == manager.getBean(key));
+
+        BeanKey<PrototypeBean> prototypeKey = manager.getKey(PrototypeBean.class);
+        assertTrue(manager.getBean(prototypeKey) != manager.getBean(prototypeKey));
+
+        try
+        {
+            manager.getKey(SimpleClass.class.getName(), Runnable.class);
+            fail("Expect ResourceException for a bean of another type");
+        } catch (ResourceException e)
+        {
+            // pass
+        }
+        ApplicationBeanManager other = new ApplicationBeanManager();
+        other.bind(SimpleClass.class);
+        try
+        {
+            other.getBean(key);
+            fail("Expect ResourceException for a key of another ResourceManager");
+        } catch (ResourceException e)
+        {
+            // pass
+        }
+        manager.freeze();
+        assertTrue(bean == manager.getBean(key));
+    }
+
+    @Test
+    public void testChildContainer()
+    {
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        ApplicationBeanManager parent = new ApplicationBeanManager();
+        parent.bindObject(events, "events");
+        parent.bind(SimpleClass.class);
+        parent.bind(WaveDependencyBean.class);
+        parent.bind(ApiTestBean.class);
+
+        ApplicationBeanManager child = parent.createChild();
+        assertTrue(child.getParent() == parent);
+        child.bind(MoreComplicatedClass.class);
+        Runnable override = new Runnable()
+        {
+            public void run()
+            {
+            }
+        };
+        child.bindObject(override, Runnable.class);
+
+        SimpleClass simple = child.getBean(SimpleClass.class);
+        assertTrue(simple == parent.getBean(SimpleClass.class));
+        assertTrue("Expect inherited bean constructed by the parent", simple.getManager() == parent);
+        assertTrue(child.getBean(MoreComplicatedClass.class).getSimpleClass() == simple);
+        assertTrue(child.getBean(ResourceManager.class) == child);
+        assertTrue(child.getBean(Runnable.class) == override);
+        assertTrue(parent.getBean(Runnable.class) instanceof ApiTestBean);
+        assertTrue(child.getBean(child.getKey(SimpleClass.class)) == simple);
+        Assert.assertFalse(parent.containsBean(MoreComplicatedClass.class));
+        assertTrue(child.containsBean("events"));
+
+        child.getBean(WaveDependencyBean.class);
+        child.shutdown();
+        Assert.assertEquals(Arrays.asList("construct dependency", "start dependency"), events);
+        assertTrue(parent.getBean(SimpleClass.class) == simple);
+        parent.shutdown();
+        Assert.assertEquals(Arrays.asList("construct dependency", "start dependency", "shutdown dependency"),
+                events);
+    }
+
+    @Test
+    public void testContainerTemplate()
+    {
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        ContainerTemplate template = ContainerTemplate.compile(new Module()
+        {
+            public void configure(ResourceManager manager)
+            {
+                manager.bindObject(events, "events");
+                manager.bind(SimpleClass.class);
+                manager.bind(MoreComplicatedClass.class);
+                manager.bind(ApiTestBean.class, Runnable.class);
+                manager.bind(PooledBean.class);
+            }
+        });
+        Assert.assertEquals(5, template.size());
+
+        ApplicationBeanManager first = template.newManager();
+        ApplicationBeanManager second = template.newManager();
+        first.startAll();
+        MoreComplicatedClass bean = first.getBean(MoreComplicatedClass.class);
+        assertTrue(bean.getSimpleClass() == first.getBean(SimpleClass.class));
+        assertTrue(bean.getSimpleClass().getManager() == first);
+        assertTrue(bean != second.getBean(MoreComplicatedClass.class));
+        assertTrue(second.getBean(SimpleClass.class).getManager() == second);
+        assertTrue(first.getBean(Callable.class) == first.getBean(Runnable.class));
+        assertTrue(first.getBean("events", List.class) == second.getBean("events", List.class));
+        Assert.assertEquals(2, second.getPool(PooledBean.class).getMaxSize());
+        assertTrue(first.getPool(PooledBean.class) != second.getPool(PooledBean.class));
+        first.bind(CyclicBeanA.class);
+    }
+
+    @Test
+    public void testContainerTemplateStartOrder()
+    {
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        ContainerTemplate template = ContainerTemplate.compile(new Module()
+        {
+            public void configure(ResourceManager manager)
+            {
+                manager.bindObject(events, "events");
+                manager.bind(WaveDependentBean.class);
+                manager.bind(WaveDependencyBean.class);
+            }
+        });
+        ApplicationBeanManager manager = template.newManager();
+        manager.startAll();
+        Assert.assertEquals(Arrays.asList("construct dependency", "start dependency",
+                "construct dependent", "start dependent"), events);
+
+        // a registration drops the compiled order
+        manager = template.newManager();
+        manager.bind(SimpleClass.class);
+        ContainerMetrics metrics = manager.enableMetrics();
+        manager.startAll();
+        Assert.assertEquals(metrics.getRegisteredBeans(), metrics.getConstructedBeans());
+    }
+
+    @Test
+    public void testContainerTemplateValidation()
+    {
+        try
+        {
+            ContainerTemplate.compile(new Module()
+            {
+                public void configure(ResourceManager manager)
+                {
+                    manager.bind(CyclicBeanA.class);
+                    manager.bind(CyclicBeanB.class);
+                }
+            });
+            fail("Expect ResourceException for cyclic beans");
+        } catch (ResourceException e)
+        {
+            // pass
+        }
+    }
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A bean whose {@link #onStart()} blocks until {@link #release()} is called.
+ * 
+ * @author Yun Liu
+ *
+ */
+public class BlockingStartBean implements LifeCycle {
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    public void onStart() {
+        started.countDown();
+        try {
+            released.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void onShutdown() {
+    }
+
+    public void awaitStarting() throws InterruptedException {
+        started.await();
+    }
+
+    public void release() {
+        released.countDown();
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+/**
+ * 
+ * @author Yun Liu
+ *
+ */
+public class ContainerMetricsTest {
+
+    @Test
+    public void testCountsRequestsAndStates() {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        ContainerMetrics metrics = manager.enableMetrics();
+        assertTrue(metrics == manager.enableMetrics());
+        // the manager is registered as a bean of its own
+        assertEquals(1, metrics.getRegisteredBeans());
+        assertEquals(1, metrics.getConstructedBeans());
+        manager.bind(SimpleClass.class);
+        manager.bind(MoreComplicatedClass.class, "complicated");
+        assertEquals(3, metrics.getRegisteredBeans());
+        assertEquals(1, metrics.getConstructedBeans());
+
+        manager.getBean(SimpleClass.class);
+        manager.getBean(SimpleClass.class);
+        manager.getBean("complicated", MoreComplicatedClass.class);
+        manager.getBean(manager.getKey(SimpleClass.class));
+        assertEquals(4, metrics.getBeanRequests());
+        assertEquals(Long.valueOf(3), metrics.getBeanRequestsByKey().get(SimpleClass.class.getName()));
+        assertEquals(Long.valueOf(1), metrics.getBeanRequestsByKey().get("complicated"));
+        assertEquals(3, metrics.getConstructedBeans());
+        assertEquals(3, metrics.getStartedBeans());
+
+        long total = 0;
+        for (long count : metrics.getLookupLatencyHistogram())
+            total += count;
+        assertEquals(4, total);
+
+        manager.startAll();
+        assertTrue(metrics.getStartupNanos() > 0);
+        manager.shutdown();
+        assertTrue(metrics.getShutdownNanos() > 0);
+
+        metrics.reset();
+        assertEquals(0, metrics.getBeanRequests());
+        assertTrue(metrics.getBeanRequestsByKey().isEmpty());
+    }
+
+    @Test
+    public void testFactoryWiringNotCounted() {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bind(SimpleClass.class);
+        manager.bindFactory(MoreComplicatedClass.class, new BeanFactory<MoreComplicatedClass>() {
+            public MoreComplicatedClass create(ResourceManager manager) {
+                return new MoreComplicatedClass(manager.getBean(SimpleClass.class));
+            }
+        });
+        ContainerMetrics metrics = manager.enableMetrics();
+        manager.getBean(MoreComplicatedClass.class);
+        assertEquals(1, metrics.getBeanRequests());
+        assertEquals(null, metrics.getBeanRequestsByKey().get(SimpleClass.class.getName()));
+    }
+
+    @Test
+    public void testKeyOfParentCountedOnce() {
+        ApplicationBeanManager parent = new ApplicationBeanManager();
+        parent.bind(SimpleClass.class);
+        ApplicationBeanManager child = parent.createChild();
+        ContainerMetrics parentMetrics = parent.enableMetrics();
+        ContainerMetrics childMetrics = child.enableMetrics();
+
+        BeanKey<SimpleClass> key = child.getKey(SimpleClass.class);
+        assertTrue(child.getBean(key) == parent.getBean(SimpleClass.class));
+        assertEquals(0, childMetrics.getBeanRequests());
+        assertEquals(2, parentMetrics.getBeanRequests());
+    }
+
+    @Test
+    public void testLatencyBuckets() {
+        assertEquals(0, ContainerMetrics.bucket(999));
+        assertEquals(1, ContainerMetrics.bucket(1500));
+        assertEquals(2, ContainerMetrics.bucket(3000));
+        assertEquals(0, ContainerMetrics.bucket(0));
+        long[] bounds = new ContainerMetrics(new ApplicationBeanManager()).getLookupLatencyBounds();
+        assertEquals(Long.MAX_VALUE, bounds[bounds.length - 1]);
+        assertEquals(bounds.length - 1, ContainerMetrics.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testLatencyBucketBoundaries() {
+        long[] bounds = new ContainerMetrics(new ApplicationBeanManager()).getLookupLatencyBounds();
+        for (int i = 0; i < bounds.length - 1; i++) {
+            // a value on a bound is counted in the bucket of that bound
+            assertEquals(i, ContainerMetrics.bucket(bounds[i]));
+            assertEquals(i + 1, ContainerMetrics.bucket(bounds[i] + 1));
+        }
+        assertEquals(0, ContainerMetrics.bucket(1000));
+        assertEquals(1, ContainerMetrics.bucket(2000));
+        assertEquals(2, ContainerMetrics.bucket(2001));
+    }
+
+    @Test
+    public void testRecordsLockWaits() throws Exception {
+        final ApplicationBeanManager manager = new ApplicationBeanManager();
+        ContainerMetrics metrics = manager.enableMetrics();
+        final BlockingStartBean blocking = new BlockingStartBean();
+        manager.bindObject(blocking);
+        Runnable getter = new Runnable() {
+            public void run() {
+                manager.getBean(BlockingStartBean.class);
+            }
+        };
+        Thread starter = new Thread(getter);
+        starter.start();
+        blocking.awaitStarting();
+        Thread waiter = new Thread(getter);
+        try {
+            waiter.start();
+            while (waiter.getState() != Thread.State.TIMED_WAITING)
+                Thread.sleep(1);
+        } finally {
+            blocking.release();
+            starter.join();
+            waiter.join();
+        }
+        assertEquals(1, metrics.getLockWaits());
+        assertTrue(metrics.getLockWaitNanos() > 0);
+    }
+
+    @Test
+    public void testRegisterWithPlatformMBeanServer() throws Exception {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bind(SimpleClass.class);
+        ObjectName name = manager.enableMetrics().register("metrics-test");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            manager.getBean(SimpleClass.class);
+            assertEquals(1L, server.getAttribute(name, "BeanRequests"));
+            assertEquals(2, server.getAttribute(name, "RegisteredBeans"));
+        } finally {
+            manager.disableMetrics();
+        }
+        assertTrue(!server.isRegistered(name));
+        assertTrue(manager.getMetrics() == null);
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.yldt.ioc.ShutdownReport.Outcome;
+
+/**
+ * 
+ * @author Yun Liu
+ *
+ */
+public class DependencyGraphTest {
+
+    @Test
+    public void testDependenciesOrderedFirst() {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bind(MoreComplicatedClass.class);
+        manager.bind(FieldAndMethodInjectionBean.class);
+        manager.bind(SimpleClass.class);
+        List<Resource> order = manager.createDependencyGraph().getOrder();
+        assertEquals(4, order.size());
+        int simple = indexOf(order, SimpleClass.class);
+        assertTrue(indexOf(order, ResourceManager.class) < simple);
+        assertTrue(simple < indexOf(order, MoreComplicatedClass.class));
+        assertTrue(simple < indexOf(order, FieldAndMethodInjectionBean.class));
+    }
+
+    @Test
+    public void testFactoryDeclaredDependencies() {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bindFactory(MoreComplicatedClass.class, new DependentBeanFactory<MoreComplicatedClass>() {
+            public MoreComplicatedClass create(ResourceManager manager) {
+                return new MoreComplicatedClass(manager.getBean(SimpleClass.class));
+            }
+
+            public Class<?>[] getDependencyTypes() {
+                return new Class<?>[] { SimpleClass.class };
+            }
+
+            public String[] getDependencyNames() {
+                return new String[] { null };
+            }
+        });
+        manager.bind(SimpleClass.class);
+        List<Resource> order = manager.createDependencyGraph().getOrder();
+        assertTrue(indexOf(order, SimpleClass.class) < indexOf(order, MoreComplicatedClass.class));
+        assertTrue(manager.getBean(MoreComplicatedClass.class).getSimpleClass() == manager
+                .getBean(SimpleClass.class));
+
+        try {
+            manager.bindFactory(CyclicBeanA.class, new DependentBeanFactory<CyclicBeanA>() {
+                public CyclicBeanA create(ResourceManager manager) {
+                    throw new UnsupportedOperationException();
+                }
+
+                public Class<?>[] getDependencyTypes() {
+                    return new Class<?>[] { CyclicBeanB.class };
+                }
+
+                public String[] getDependencyNames() {
+                    return new String[0];
+                }
+            });
+            fail("Expect ResourceException");
+        } catch (ResourceException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(CyclicBeanA.class.getName()));
+        }
+    }
+
+    @Test
+    public void testCycleDetected() {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bind(CyclicBeanA.class);
+        manager.bind(CyclicBeanB.class);
+        try {
+            manager.createDependencyGraph();
+            fail("Expect ResourceException");
+        } catch (ResourceException e) {
+            assertTrue(e.getMessage().contains(CyclicBeanA.class.getName()));
+        }
+    }
+
+    @Test
+    public void testStartAllInParallel() {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bind(MoreComplicatedClass.class);
+        manager.bind(FieldAndMethodInjectionBean.class);
+        manager.bind(ExpectOnStartBean.class);
+        manager.bind(SimpleClass.class);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            manager.startAll(executor);
+        } finally {
+            executor.shutdown();
+        }
+        ExpectOnStartBean bean = manager.getBean(ExpectOnStartBean.class);
+        assertEquals(1, bean.getOnStartCount());
+        assertTrue(manager.getBean(MoreComplicatedClass.class).getSimpleClass() == manager
+                .getBean(SimpleClass.class));
+    }
+
+    @Test(timeout = 60000)
+    public void testStartAllOnRejectingExecutor() {
+        // a chain deep enough to overflow the stack if rejected visits recursed
+        SyntheticGraph graph = new SyntheticGraph.Layout().beans(3000).depth(3000).fanOut(1).lifeCycles(0)
+                .generate();
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        graph.bind(manager);
+        final AtomicInteger rejections = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<Runnable>(), new ThreadPoolExecutor.AbortPolicy() {
+                    @Override
+                    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+                        rejections.incrementAndGet();
+                        super.rejectedExecution(task, executor);
+                    }
+                });
+        try {
+            manager.startAll(executor);
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(rejections.get() > 0);
+        // the manager is a bean of its own
+        assertEquals(3001, manager.listBeans().size());
+    }
+
+    @Test
+    public void testUnrelatedCyclicPrototypesDoNotBlockStart() {
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bindObject(events, "events");
+        manager.bind(CyclicBeanA.class, Scope.Prototype);
+        manager.bind(CyclicBeanB.class, Scope.Prototype);
+        manager.bind(WaveDependencyBean.class);
+        manager.startAll();
+        assertEquals(Arrays.asList("construct dependency", "start dependency"), events);
+
+        manager = new ApplicationBeanManager();
+        manager.bindObject(events, "events");
+        manager.bind(CyclicBeanA.class, Scope.Prototype);
+        manager.bind(CyclicBeanB.class, Scope.Prototype);
+        manager.bind(WaveDependentBean.class);
+        manager.bind(WaveDependencyBean.class);
+        StartupReport report = manager.startInWaves(null);
+        assertEquals(3, report.getWaves());
+        try {
+            manager.getBean(CyclicBeanA.class);
+            fail("Expect ResourceException for cyclic beans");
+        } catch (ResourceException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Cyclic dependency"));
+        }
+    }
+
+    @Test
+    public void testStartInWaves() {
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bindObject(events, "events");
+        manager.bind(WaveDependentBean.class);
+        manager.bind(WaveDependencyBean.class);
+        manager.bind(ExpectOnStartBean.class);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        StartupReport report;
+        try {
+            report = manager.startInWaves(executor);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(Arrays.asList("construct dependency", "construct dependent", "start dependency",
+                "start dependent"), events);
+        assertEquals(1, manager.getBean(ExpectOnStartBean.class).getOnStartCount());
+        assertEquals(3, report.getWaves());
+        assertEquals(5, report.getStartDurations().size());
+        assertEquals(WaveDependentBean.class.getName(),
+                report.getCriticalPath().get(report.getCriticalPath().size() - 1));
+    }
+
+    @Test
+    public void testShutdownInReverseOrder() {
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bindObject(events, "events");
+        manager.bind(WaveDependencyBean.class);
+        manager.bind(WaveDependentBean.class);
+        manager.startAll();
+        events.clear();
+        manager.shutdown();
+        assertEquals(Arrays.asList("shutdown dependent", "shutdown dependency"), events);
+        assertEquals(ResourceManager.State.Shutdown, manager.getState());
+    }
+
+    @Test
+    public void testShutdownWithTimeout() {
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bindObject(events, "events");
+        manager.bind(WaveDependencyBean.class);
+        manager.bind(WaveDependentBean.class);
+        manager.bind(HangingShutdownBean.class);
+        manager.startAll();
+        events.clear();
+        ShutdownReport report = manager.shutdown(100, 5000, TimeUnit.MILLISECONDS);
+        assertEquals(Arrays.asList("shutdown dependent", "shutdown dependency"), events);
+        assertEquals(Arrays.asList(HangingShutdownBean.class.getName()), report.getBeans(Outcome.TimedOut));
+        assertEquals(2, report.getBeans(Outcome.Completed).size());
+        assertTrue(!report.isClean());
+    }
+
+    @Test
+    public void testShutdownThroughBeanWithoutLifeCycle() {
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bindObject(events, "events");
+        manager.bind(ShutdownHeadBean.class);
+        manager.bind(ShutdownMiddleBean.class);
+        manager.bind(ShutdownTailBean.class);
+        manager.startAll();
+        ShutdownReport report = manager.shutdown(1000, 5000, TimeUnit.MILLISECONDS);
+        assertTrue(report.isClean());
+        assertEquals(Arrays.asList("shutdown head", "shutdown tail"), events);
+    }
+
+    @Test
+    public void testShutdownIgnoresUnusedCyclicBeans() {
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bindObject(events, "events");
+        manager.bind(CyclicBeanA.class);
+        manager.bind(CyclicBeanB.class);
+        manager.bind(WaveDependencyBean.class);
+        manager.bind(WaveDependentBean.class);
+        manager.getBean(WaveDependentBean.class);
+        events.clear();
+        manager.shutdown();
+        assertEquals(Arrays.asList("shutdown dependent", "shutdown dependency"), events);
+        assertEquals(ResourceManager.State.Shutdown, manager.getState());
+    }
+
+    @Test
+    public void testShutdownFactoryBeanBeforeEarlierBeans() {
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.bindObject(events, "events");
+        manager.bind(ShutdownTailBean.class);
+        manager.bind(ShutdownMiddleBean.class);
+        manager.bindFactory(ShutdownHeadBean.class, new BeanFactory<ShutdownHeadBean>() {
+            public ShutdownHeadBean create(ResourceManager manager) {
+                return new ShutdownHeadBean(events, manager.getBean(ShutdownMiddleBean.class));
+            }
+        });
+        manager.startAll();
+        manager.shutdown(1000, 5000, TimeUnit.MILLISECONDS);
+        assertEquals(Arrays.asList("shutdown head", "shutdown tail"), events);
+    }
+
+    private int indexOf(List<Resource> order, Class<?> type) {
+        for (int i = 0; i < order.size(); ++i)
+            if (order.get(i).getNames().contains(type.getName()))
+                return i;
+        return -1;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * 
+ * @author Yun Liu
+ *
+ */
+public class InjectionPlanTest {
+
+    @Test
+    public void testPlanIsComputedOnce() {
+        assertTrue(InjectionPlan.forType(FieldAndMethodInjectionBean.class) == InjectionPlan
+                .forType(FieldAndMethodInjectionBean.class));
+    }
+
+    @Test
+    public void testPlanCollectsInjectionPoints() {
+        InjectionPlan plan = InjectionPlan.forType(FieldAndMethodInjectionBean.class);
+        assertEquals(0, plan.getConstructorDependencies().length);
+        assertEquals(1, plan.getFields().length);
+        assertEquals(SimpleClass.class.getName(), plan.getFields()[0].getDependency().getName());
+        assertEquals(1, plan.getMethods().length);
+        assertEquals(1, plan.getMethods()[0].getDependencies().length);
+
+        plan = InjectionPlan.forType(MoreComplicatedClass.class);
+        assertEquals(1, plan.getConstructorDependencies().length);
+        assertEquals(SimpleClass.class, plan.getConstructorDependencies()[0].getType());
+    }
+
+    @Test
+    public void testConstructorRequiredOnUse() {
+        InjectionPlan plan = InjectionPlan.forType(Object[].class);
+        try {
+            plan.getConstructor();
+            fail("Expect ResourceException");
+        } catch (ResourceException e) {
+            // pass
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import java.util.List;
+
+import org.yldt.ioc.annotations.Inject;
+
+/**
+ * Depends on {@link ShutdownTailBean} through a bean without life cycle, and
+ * is slow to shutdown.
+ * 
+ * @author Yun Liu
+ *
+ */
+public class ShutdownHeadBean implements LifeCycle {
+    private final List<String> events;
+
+    public ShutdownHeadBean(@Inject("events") List<String> events, ShutdownMiddleBean middle) {
+        this.events = events;
+    }
+
+    public void onStart() {
+    }
+
+    public void onShutdown() {
+        try {
+            Thread.sleep(50);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        events.add("shutdown head");
+    }
+}
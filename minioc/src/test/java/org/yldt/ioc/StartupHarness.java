@@ -0,0 +1,165 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+
+import org.yldt.ioc.SyntheticGraph.Layout;
+
+/**
+ * Measures the start of containers binding a {@link SyntheticGraph}: the cold
+ * start of the first container, which also analyzes the injection plans of
+ * the freshly loaded classes, the average warm start of the following
+ * containers, the peak heap and the bytes allocated per bean by the cold
+ * start.
+ * 
+ * Starting lazily obtains the beans with getBean in index order instead of
+ * startAll, so that the roots are resolved first and their dependency chains
+ * are constructed recursively, as when an application obtains its entry
+ * points without calling startAll.
+ * 
+ * Run with the arguments <code>beans depth fanOut [warmRuns] [lazy]</code>,
+ * e.g. <code>50000 20 4</code>, to measure graphs too large for the unit
+ * tests.
+ * 
+ * @author Yun Liu
+ *
+ */
+public class StartupHarness {
+
+    public static class Result {
+        private final int beans;
+        private final long coldNanos;
+        private final long warmNanos;
+        private final long peakHeapBytes;
+        private final long allocatedBytes;
+
+        Result(int beans, long coldNanos, long warmNanos, long peakHeapBytes, long allocatedBytes) {
+            this.beans = beans;
+            this.coldNanos = coldNanos;
+            this.warmNanos = warmNanos;
+            this.peakHeapBytes = peakHeapBytes;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public long getColdNanos() {
+            return coldNanos;
+        }
+
+        /**
+         * The average start of the warm runs, or 0 without warm runs.
+         */
+        public long getWarmNanos() {
+            return warmNanos;
+        }
+
+        public long getPeakHeapBytes() {
+            return peakHeapBytes;
+        }
+
+        /**
+         * The bytes allocated by the cold start per bean, or -1 if the JVM
+         * does not measure thread allocations.
+         */
+        public long getAllocatedBytesPerBean() {
+            return allocatedBytes < 0 ? -1 : allocatedBytes / beans;
+        }
+
+        @Override
+        public String toString() {
+            return "Started " + beans + " beans: cold " + coldNanos / 1000000 + "ms, warm "
+                    + warmNanos / 1000000 + "ms, peak heap " + peakHeapBytes / (1024 * 1024)
+                    + "MB, allocated " + getAllocatedBytesPerBean() + " bytes per bean";
+        }
+    }
+
+    public static Result measure(SyntheticGraph graph, int warmRuns) {
+        return measure(graph, warmRuns, false);
+    }
+
+    public static Result measure(SyntheticGraph graph, int warmRuns, boolean lazy) {
+        System.gc();
+        resetPeakHeap();
+        long allocatedBefore = allocatedBytes();
+        long coldNanos = start(graph, lazy);
+        long allocatedAfter = allocatedBytes();
+        long peakHeap = peakHeap();
+
+        long warmNanos = 0;
+        for (int i = 0; i < warmRuns; i++)
+            warmNanos += start(graph, lazy);
+        return new Result(graph.size(), coldNanos, warmRuns == 0 ? 0 : warmNanos / warmRuns, peakHeap,
+                allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore);
+    }
+
+    private static long start(SyntheticGraph graph, boolean lazy) {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        graph.bind(manager);
+        long start = System.nanoTime();
+        if (lazy) {
+            for (Class<?> type : graph.getTypes())
+                manager.getBean(type);
+        } else {
+            manager.startAll();
+        }
+        long nanos = System.nanoTime() - start;
+        manager.shutdown();
+        return nanos;
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP)
+                pool.resetPeakUsage();
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP)
+                peak += pool.getPeakUsage().getUsed();
+        return peak;
+    }
+
+    /**
+     * The bytes allocated by the current thread, startAll without an executor
+     * runs in the calling thread.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled())
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    public static void main(String[] args) {
+        Layout layout = new Layout().beans(Integer.parseInt(args[0])).depth(Integer.parseInt(args[1]))
+                .fanOut(Integer.parseInt(args[2]));
+        int warmRuns = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        boolean lazy = args.length > 4 && args[4].equals("lazy");
+        long start = System.nanoTime();
+        SyntheticGraph graph = layout.generate();
+        System.out.println("Generated " + graph.size() + " beans in " + (System.nanoTime() - start) / 1000000
+                + "ms");
+        System.out.println(measure(graph, warmRuns, lazy));
+    }
+}
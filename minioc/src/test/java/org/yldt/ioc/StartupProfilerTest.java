@@ -0,0 +1,176 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.yldt.ioc.StartupProfiler.BeanTiming;
+import org.yldt.ioc.StartupProfiler.Phase;
+
+/**
+ * 
+ * @author Yun Liu
+ *
+ */
+public class StartupProfilerTest {
+
+    @Test
+    public void testRecordsPhasesAndDependencyTime() {
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        StartupProfiler profiler = new StartupProfiler();
+        manager.setProfiler(profiler);
+        manager.bindObject(events, "events");
+        manager.bind(SimpleClass.class);
+        manager.bind(MoreComplicatedClass.class);
+        manager.bind(WaveDependentBean.class);
+        manager.bind(WaveDependencyBean.class);
+        manager.startAll();
+
+        BeanTiming dependent = timing(profiler, WaveDependentBean.class);
+        BeanTiming dependency = timing(profiler, WaveDependencyBean.class);
+        assertEquals(1, dependent.getCount());
+        assertTrue(dependent.getPhaseNanos(Phase.Start) >= 10000000L);
+        assertTrue(dependent.getConstructionNanos() >= dependent.getPhaseNanos(Phase.Instantiate));
+        assertTrue(dependency.getConstructionNanos() > 0);
+        assertEquals(dependent.getName(), profiler.getTimings().get(0).getName());
+
+        BeanTiming complicated = timing(profiler, MoreComplicatedClass.class);
+        assertTrue(complicated.getSelfNanos() <= complicated.getConstructionNanos());
+    }
+
+    @Test
+    public void testPreconstructedDependencyNotInSelfTime() {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        StartupProfiler profiler = new StartupProfiler();
+        manager.setProfiler(profiler);
+        manager.bind(SlowBean.class);
+        manager.bind(SlowDependentBean.class);
+        manager.getBean(SlowDependentBean.class);
+        assertSlowDependency(profiler);
+    }
+
+    public static class FailingDependentBean {
+        public FailingDependentBean(AccessorsTest.FailingBean failing) {
+        }
+    }
+
+    @Test
+    public void testFailedDependencyLeavesNoFrame() throws Exception {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        StartupProfiler profiler = new StartupProfiler();
+        manager.setProfiler(profiler);
+        manager.bind(SimpleClass.class);
+        manager.bind(AccessorsTest.FailingBean.class);
+        manager.bind(FailingDependentBean.class, Scope.Prototype);
+        try {
+            manager.getBean(FailingDependentBean.class);
+            fail("Expect ResourceException for a failing dependency");
+        } catch (ResourceException e) {
+            // pass
+        }
+        assertFalse(hasPreconstructed(profiler));
+    }
+
+    private static boolean hasPreconstructed(StartupProfiler profiler) throws Exception {
+        Field field = StartupProfiler.class.getDeclaredField("preconstructed");
+        field.setAccessible(true);
+        return ((ThreadLocal<?>) field.get(profiler)).get() != null;
+    }
+
+    @Test
+    public void testInjectedPrototypeNotInSelfTime() {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        StartupProfiler profiler = new StartupProfiler();
+        manager.setProfiler(profiler);
+        manager.bind(SlowBean.class, Scope.Prototype);
+        manager.bind(SlowDependentBean.class);
+        manager.getBean(SlowDependentBean.class);
+        assertSlowDependency(profiler);
+    }
+
+    @Test
+    public void testFactoryDependencyNotInSelfTime() {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        StartupProfiler profiler = new StartupProfiler();
+        manager.setProfiler(profiler);
+        manager.bind(SlowBean.class);
+        manager.bindFactory(SlowDependentBean.class, new BeanFactory<SlowDependentBean>() {
+            public SlowDependentBean create(ResourceManager manager) {
+                return new SlowDependentBean(manager.getBean(SlowBean.class));
+            }
+        });
+        manager.getBean(SlowDependentBean.class);
+        assertSlowDependency(profiler);
+    }
+
+    private void assertSlowDependency(StartupProfiler profiler) {
+        long slow = SlowBean.CONSTRUCTION_MILLIS * 1000000L;
+        BeanTiming dependency = timing(profiler, SlowBean.class);
+        BeanTiming dependent = timing(profiler, SlowDependentBean.class);
+        assertTrue(dependency.toString(), dependency.getSelfNanos() >= slow);
+        assertTrue(dependent.toString(), dependent.getConstructionNanos() >= slow);
+        assertTrue(dependent.toString(), dependent.getDependencyNanos() >= slow);
+        assertTrue(dependent.toString(), dependent.getSelfNanos() < slow);
+        assertEquals(dependency.getName(), profiler.getTimings().get(0).getName());
+    }
+
+    @Test
+    public void testExports() {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        StartupProfiler profiler = new StartupProfiler();
+        manager.setProfiler(profiler);
+        manager.bind(SimpleClass.class);
+        manager.bind(MoreComplicatedClass.class);
+        manager.startAll();
+
+        String simple = SimpleClass.class.getName();
+        String complicated = MoreComplicatedClass.class.getName();
+        assertTrue(profiler.toTable().contains(complicated));
+        String json = profiler.toJson(manager);
+        assertTrue(json, json.contains("{\"name\":\"" + complicated + "\""));
+        assertTrue(json, json.contains("\"dependencies\":[\"" + simple + "\"]"));
+        String dot = profiler.toDot(manager);
+        assertTrue(dot, dot.startsWith("digraph startup {"));
+        assertTrue(dot, dot.contains("\"" + complicated + "\" -> \"" + simple + "\";"));
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        StartupProfiler profiler = new StartupProfiler();
+        manager.bind(SimpleClass.class);
+        manager.getBean(SimpleClass.class);
+        assertTrue(manager.getProfiler() == null);
+        assertTrue(profiler.getTimings().isEmpty());
+    }
+
+    private BeanTiming timing(StartupProfiler profiler, Class<?> type) {
+        for (BeanTiming timing : profiler.getTimings())
+            if (timing.getName().equals(type.getName()))
+                return timing;
+        throw new AssertionError("No timing for " + type);
+    }
+}
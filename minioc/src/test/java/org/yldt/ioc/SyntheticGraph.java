@@ -0,0 +1,345 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Generates and compiles one bean class per node of a synthetic dependency
+ * graph, so that containers far larger than the hand written fixtures can be
+ * bound and started. Bean <code>i</code> is the class
+ * <code>org.yldt.ioc.synthetic.Bean&lt;i&gt;</code> and depends on the beans
+ * listed in <code>dependencies[i]</code>, which must form a DAG.
+ * 
+ * @author Yun Liu
+ *
+ */
+public class SyntheticGraph {
+    public static enum Shape {
+        /**
+         * A shallow tree, each bean depending on up to 100 beans. A constructor
+         * takes at most 255 parameters, so a single root cannot depend on
+         * all the beans.
+         */
+        Wide,
+        /** A chain, each bean depending on the next one. */
+        Deep,
+        /** Layers of four beans, each depending on all the beans of the next layer. */
+        Diamond
+    }
+
+    public static enum Injection {
+        Constructor, Field, Method
+    }
+
+    private static final String PACKAGE = "org.yldt.ioc.synthetic";
+    private static final int WIDE_FAN_OUT = 100;
+    private static final int DIAMOND_WIDTH = 4;
+
+    private final int[][] dependencies;
+    private final List<Class<?>> types;
+
+    private SyntheticGraph(int[][] dependencies, List<Class<?>> types) {
+        this.dependencies = dependencies;
+        this.types = types;
+    }
+
+    /**
+     * Layout of a layered graph: the beans are spread evenly over
+     * <code>depth</code> layers and each bean depends on beans of the next
+     * layer, chosen at random from <code>seed</code>.
+     */
+    public static class Layout {
+        private int beans = 1000;
+        private int depth = 10;
+        private int fanOut = 3;
+        private int maxFanIn;
+        private Injection[] injections = Injection.values();
+        private double lifeCycles = 0.5;
+        private long seed = 42;
+
+        public Layout beans(int beans) {
+            this.beans = beans;
+            return this;
+        }
+
+        /**
+         * The number of layers, which is the length of the longest
+         * dependency chain.
+         */
+        public Layout depth(int depth) {
+            this.depth = depth;
+            return this;
+        }
+
+        /**
+         * The number of dependencies of each bean not in the last layer, at
+         * most the size of the next layer.
+         */
+        public Layout fanOut(int fanOut) {
+            this.fanOut = fanOut;
+            return this;
+        }
+
+        /**
+         * The maximum number of beans depending on a bean, or 0 for no
+         * limit. Beans get fewer than <code>fanOut</code> dependencies when
+         * the next layer is exhausted.
+         */
+        public Layout maxFanIn(int maxFanIn) {
+            this.maxFanIn = maxFanIn;
+            return this;
+        }
+
+        /**
+         * The injection styles to choose from at random for each bean.
+         */
+        public Layout injections(Injection... injections) {
+            this.injections = injections;
+            return this;
+        }
+
+        /**
+         * The share of the beans implementing {@link LifeCycle}.
+         */
+        public Layout lifeCycles(double lifeCycles) {
+            this.lifeCycles = lifeCycles;
+            return this;
+        }
+
+        public Layout seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public SyntheticGraph generate() {
+            Random random = new Random(seed);
+            int[][] dependencies = generateDependencies(random);
+            Injection[] chosen = new Injection[beans];
+            boolean[] lifeCycle = new boolean[beans];
+            for (int i = 0; i < beans; i++) {
+                chosen[i] = injections[random.nextInt(injections.length)];
+                lifeCycle[i] = random.nextDouble() < lifeCycles;
+            }
+            return SyntheticGraph.generate(dependencies, chosen, lifeCycle);
+        }
+
+        /**
+         * The dependencies of the layout, without generating the classes.
+         */
+        public int[][] generateDependencies() {
+            return generateDependencies(new Random(seed));
+        }
+
+        private int[][] generateDependencies(Random random) {
+            int layers = Math.max(1, Math.min(depth, beans));
+            int[] layerStart = new int[layers + 1];
+            for (int layer = 0; layer <= layers; layer++)
+                layerStart[layer] = (int) ((long) beans * layer / layers);
+
+            int[][] dependencies = new int[beans][];
+            int[] fanIn = new int[beans];
+            for (int layer = 0; layer < layers; layer++) {
+                // the beans of the next layer still below the fan-in limit
+                int[] candidates = new int[0];
+                if (layer + 1 < layers)
+                    candidates = range(layerStart[layer + 1], layerStart[layer + 2]);
+                int available = candidates.length;
+                for (int i = layerStart[layer]; i < layerStart[layer + 1]; i++) {
+                    int count = Math.min(fanOut, available);
+                    dependencies[i] = new int[count];
+                    // partial shuffle, drawing without replacement
+                    for (int d = 0; d < count; d++) {
+                        int j = d + random.nextInt(available - d);
+                        int dependency = candidates[j];
+                        candidates[j] = candidates[d];
+                        candidates[d] = dependency;
+                        dependencies[i][d] = dependency;
+                    }
+                    for (int d = count - 1; d >= 0; d--) {
+                        if (maxFanIn > 0 && ++fanIn[candidates[d]] == maxFanIn)
+                            candidates[d] = candidates[--available];
+                    }
+                }
+            }
+            return dependencies;
+        }
+    }
+
+    public static SyntheticGraph generate(Shape shape, int size, Injection injection) {
+        Injection[] injections = new Injection[size];
+        Arrays.fill(injections, injection);
+        return generate(dependencies(shape, size), injections, new boolean[size]);
+    }
+
+    public static int[][] dependencies(Shape shape, int size) {
+        int[][] dependencies = new int[size][];
+        for (int i = 0; i < size; i++) {
+            switch (shape) {
+            case Wide:
+                dependencies[i] = range(Math.min(i * WIDE_FAN_OUT + 1, size),
+                        Math.min((i + 1) * WIDE_FAN_OUT + 1, size));
+                break;
+            case Deep:
+                dependencies[i] = i + 1 < size ? new int[] { i + 1 } : new int[0];
+                break;
+            case Diamond:
+                int next = (i / DIAMOND_WIDTH + 1) * DIAMOND_WIDTH;
+                dependencies[i] = range(next, Math.min(next + DIAMOND_WIDTH, size));
+                break;
+            }
+        }
+        return dependencies;
+    }
+
+    private static int[] range(int from, int to) {
+        int[] range = new int[Math.max(0, to - from)];
+        for (int i = 0; i < range.length; i++)
+            range[i] = from + i;
+        return range;
+    }
+
+    /**
+     * @param injections how each bean is injected its dependencies.
+     * @param lifeCycles whether each bean implements {@link LifeCycle}.
+     */
+    public static SyntheticGraph generate(int[][] dependencies, Injection[] injections,
+            boolean[] lifeCycles) {
+        try {
+            File directory = Files.createTempDirectory("synthetic-graph").toFile();
+            List<File> sources = new ArrayList<File>(dependencies.length);
+            File packageDirectory = new File(directory, PACKAGE.replace('.', File.separatorChar));
+            packageDirectory.mkdirs();
+            for (int i = 0; i < dependencies.length; i++) {
+                File source = new File(packageDirectory, "Bean" + i + ".java");
+                Files.write(source.toPath(), source(i, dependencies[i], injections[i], lifeCycles[i])
+                        .getBytes(Charset.forName("UTF-8")));
+                sources.add(source);
+            }
+            compile(directory, sources);
+            ClassLoader loader = new URLClassLoader(new URL[] { directory.toURI().toURL() },
+                    SyntheticGraph.class.getClassLoader());
+            List<Class<?>> types = new ArrayList<Class<?>>(dependencies.length);
+            for (int i = 0; i < dependencies.length; i++)
+                types.add(loader.loadClass(PACKAGE + ".Bean" + i));
+            return new SyntheticGraph(dependencies, types);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void compile(File directory, List<File> sources) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null)
+            throw new IllegalStateException("Generating a graph requires a JDK");
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        try {
+            Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjectsFromFiles(sources);
+            StringWriter output = new StringWriter();
+            List<String> options = Arrays.asList("-proc:none", "-nowarn", "-d", directory.getPath(),
+                    "-classpath", System.getProperty("java.class.path"));
+            if (!compiler.getTask(output, fileManager, null, options, null, units).call())
+                throw new IllegalStateException("Failed to compile the graph: " + output);
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    static String source(int index, int[] dependencies, Injection injection, boolean lifeCycle) {
+        StringBuilder source = new StringBuilder();
+        source.append("package ").append(PACKAGE).append(";\n");
+        source.append("public class Bean").append(index);
+        if (lifeCycle)
+            source.append(" implements org.yldt.ioc.LifeCycle");
+        source.append(" {\n");
+        for (int i = 0; i < dependencies.length; i++) {
+            if (injection == Injection.Field)
+                source.append("    @org.yldt.ioc.annotations.Inject\n");
+            source.append("    Bean").append(dependencies[i]).append(" d").append(i).append(";\n");
+        }
+        if (injection == Injection.Constructor) {
+            source.append("    public Bean").append(index).append("(");
+            parameters(source, dependencies);
+            source.append(") {\n");
+            assignments(source, dependencies);
+            source.append("    }\n");
+        } else if (injection == Injection.Method && dependencies.length > 0) {
+            source.append("    @org.yldt.ioc.annotations.Inject\n");
+            source.append("    void inject(");
+            parameters(source, dependencies);
+            source.append(") {\n");
+            assignments(source, dependencies);
+            source.append("    }\n");
+        }
+        if (lifeCycle) {
+            source.append("    public void onStart() {\n    }\n");
+            source.append("    public void onShutdown() {\n    }\n");
+        }
+        return source.append("}\n").toString();
+    }
+
+    private static void parameters(StringBuilder source, int[] dependencies) {
+        for (int i = 0; i < dependencies.length; i++) {
+            if (i > 0)
+                source.append(", ");
+            source.append("Bean").append(dependencies[i]).append(" d").append(i);
+        }
+    }
+
+    private static void assignments(StringBuilder source, int[] dependencies) {
+        for (int i = 0; i < dependencies.length; i++)
+            source.append("        this.d").append(i).append(" = d").append(i).append(";\n");
+    }
+
+    /**
+     * Bind all the beans of the graph, in index order.
+     */
+    public void bind(ResourceManager manager) {
+        Bindings bindings = manager.bindings();
+        for (Class<?> type : types)
+            bindings.bind(type);
+        bindings.commit();
+    }
+
+    public int size() {
+        return types.size();
+    }
+
+    public int[][] getDependencies() {
+        return dependencies;
+    }
+
+    public List<Class<?>> getTypes() {
+        return types;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.yldt.ioc.SyntheticGraph.Injection;
+import org.yldt.ioc.SyntheticGraph.Layout;
+
+/**
+ * 
+ * @author Yun Liu
+ *
+ */
+public class SyntheticGraphTest {
+
+    @Test
+    public void testLayout() {
+        int[][] dependencies = new Layout().beans(1000).depth(10).fanOut(3).maxFanIn(4).generateDependencies();
+        int[] fanIn = new int[1000];
+        for (int i = 0; i < 1000; i++) {
+            // layers of 100 beans, depending on the next layer only
+            assertEquals(i < 900 ? 3 : 0, dependencies[i].length);
+            for (int dependency : dependencies[i]) {
+                assertEquals(i / 100 + 1, dependency / 100);
+                fanIn[dependency]++;
+            }
+        }
+        for (int count : fanIn)
+            assertTrue(count <= 4);
+    }
+
+    @Test
+    public void testStartsThousandBeans() {
+        SyntheticGraph graph = new Layout().beans(1000).depth(20).fanOut(3)
+                .injections(Injection.Constructor, Injection.Field, Injection.Method).lifeCycles(0.5).generate();
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        graph.bind(manager);
+        manager.startAll();
+        // the manager is a bean of its own
+        assertEquals(1001, manager.listBeans().size());
+
+        StartupHarness.Result result = StartupHarness.measure(graph, 1);
+        assertTrue(result.getColdNanos() > 0);
+        assertTrue(result.getWarmNanos() > 0);
+        assertTrue(result.getPeakHeapBytes() > 0);
+    }
+
+    @Test
+    public void testResolvesDeepChainLazily() {
+        // deep enough to overflow the stack when constructed recursively
+        SyntheticGraph graph = new Layout().beans(3000).depth(3000).fanOut(1).lifeCycles(0).generate();
+        for (int i = 0; i < 2999; i++)
+            assertEquals(i + 1, graph.getDependencies()[i][0]);
+        StartupHarness.Result result = StartupHarness.measure(graph, 0, true);
+        assertTrue(result.getColdNanos() > 0);
+    }
+}
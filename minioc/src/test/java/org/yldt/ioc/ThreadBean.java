@@ -0,0 +1,48 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc;
+
+import java.util.List;
+
+import org.yldt.ioc.annotations.Bean;
+import org.yldt.ioc.annotations.Inject;
+
+/**
+ * 
+ * @author Yun Liu
+ *
+ */
+@Bean(scope = Scope.Thread)
+public class ThreadBean implements LifeCycle {
+    private final List<String> events;
+    private final Thread thread = Thread.currentThread();
+
+    public ThreadBean(@Inject("events") List<String> events) {
+        this.events = events;
+    }
+
+    public Thread getThread() {
+        return thread;
+    }
+
+    public void onStart() {
+        events.add("start " + thread.getName());
+    }
+
+    public void onShutdown() {
+        events.add("shutdown " + thread.getName());
+    }
+}
@@ -0,0 +1,476 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a {@link org.yldt.ioc.BeanFactory} for each class annotated with
+ * {@link org.yldt.ioc.annotations.Bean} and a {@link org.yldt.ioc.Module}
+ * binding all of them in a single batch of
+ * {@link org.yldt.ioc.Bindings#bindFactory(Class, org.yldt.ioc.BeanFactory, org.yldt.ioc.Scope, String, String...)}
+ * with the scope and names declared by the annotation, so the container does
+ * not read them reflectively.
+ * The generated factories construct the bean with <code>new</code>, assign the
+ * {@link org.yldt.ioc.annotations.Inject} fields and call the injector methods
+ * directly, so no reflection is needed when the container builds the bean.
+ * The factories are {@link org.yldt.ioc.DependentBeanFactory}s declaring the
+ * beans they inject, so the container knows the dependencies of the bean as
+ * if it was created reflectively.
+ * 
+ * {@link org.yldt.ioc.Provider} injection points are supported,
+ * {@link org.yldt.ioc.annotations.Lazy} proxies are not.
+ * 
+ * The generated factory is placed in the package of the bean. Injected fields
+ * and methods must therefore be accessible from that package, i.e. not private
+ * and, if declared by a super class in another package, public.
+ * 
+ * The fully qualified name of the generated module is set with the
+ * <code>minioc.module</code> processor option and defaults to
+ * <code>org.yldt.ioc.generated.GeneratedModule</code>.
+ * 
+ * @author Yun Liu
+ */
+@SupportedAnnotationTypes(BeanProcessor.BEAN)
+@SupportedOptions(BeanProcessor.MODULE_OPTION)
+public class BeanProcessor extends AbstractProcessor {
+	static final String BEAN = "org.yldt.ioc.annotations.Bean";
+	static final String INJECT = "org.yldt.ioc.annotations.Inject";
+	static final String LAZY = "org.yldt.ioc.annotations.Lazy";
+	static final String PROVIDER = "org.yldt.ioc.Provider";
+	public static final String MODULE_OPTION = "minioc.module";
+	static final String DEFAULT_MODULE = "org.yldt.ioc.generated.GeneratedModule";
+	static final String FACTORY_SUFFIX = "_BeanFactory";
+
+	// canonical names of the beans and their factories, and the arguments
+	// binding them with their scope and names, pending the module
+	private final List<String> beans = new ArrayList<String>();
+	private final List<String> factories = new ArrayList<String>();
+	private final List<String> bindingArguments = new ArrayList<String>();
+	private boolean moduleWritten = false;
+	// class literals and quoted names, or null, of the beans injected by the
+	// factory being generated, except Providers
+	private final List<String> dependencyTypes = new ArrayList<String>();
+	private final List<String> dependencyNames = new ArrayList<String>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(final Set<? extends TypeElement> annotations,
+			final RoundEnvironment roundEnv) {
+		if (roundEnv.processingOver())
+			return false;
+
+		final int before = beans.size();
+		for (final TypeElement annotation : annotations)
+			for (final Element element : roundEnv
+					.getElementsAnnotatedWith(annotation))
+				if (element.getKind() == ElementKind.CLASS)
+					generateFactory((TypeElement) element);
+
+		// the module is written in the first round without new beans so that it
+		// is still compiled together with the factories
+		if (beans.size() == before && !beans.isEmpty()) {
+			if (moduleWritten)
+				return false;
+			writeModule();
+			moduleWritten = true;
+		} else if (beans.size() != before && moduleWritten) {
+			error(null, "@Bean classes generated after the module ["
+					+ moduleName() + "] was written are not supported");
+		}
+		return false;
+	}
+
+	private void generateFactory(final TypeElement bean) {
+		if (!isAccessibleClass(bean)) {
+			error(bean,
+					"@Bean class must be a public top level or public static nested class for generated wiring");
+			return;
+		}
+
+		final List<ExecutableElement> constructors = new ArrayList<ExecutableElement>();
+		for (final ExecutableElement constructor : ElementFilter
+				.constructorsIn(bean.getEnclosedElements()))
+			if (constructor.getModifiers().contains(Modifier.PUBLIC))
+				constructors.add(constructor);
+		if (constructors.size() != 1) {
+			error(bean, "@Bean class must have exactly one public constructor");
+			return;
+		}
+
+		final String packageName = packageOf(bean).getQualifiedName()
+				.toString();
+		final String factoryName = flatName(bean) + FACTORY_SUFFIX;
+		final String beanName = bean.getQualifiedName().toString();
+		final StringBuilder body = new StringBuilder();
+		dependencyTypes.clear();
+		dependencyNames.clear();
+		body.append("\t\tfinal ").append(beanName).append(" bean = new ")
+				.append(beanName).append("(");
+		if (!appendArguments(body, constructors.get(0)))
+			return;
+		body.append(");\n");
+		if (!appendInjections(body, bean))
+			return;
+		body.append("\t\treturn bean;\n");
+
+		final String qualifiedFactory = packageName.length() == 0 ? factoryName
+				: packageName + "." + factoryName;
+		try {
+			final PrintWriter writer = new PrintWriter(processingEnv.getFiler()
+					.createSourceFile(qualifiedFactory, bean).openWriter());
+			try {
+				if (packageName.length() > 0)
+					writer.println("package " + packageName + ";");
+				writer.println();
+				writer.println("/**");
+				writer.println(" * Generated by " + getClass().getName()
+						+ ". Do not edit.");
+				writer.println(" */");
+				writer.println("public final class " + factoryName
+						+ " implements org.yldt.ioc.DependentBeanFactory<"
+						+ beanName + "> {");
+				writer.println("\tprivate static final Class<?>[] DEPENDENCY_TYPES = { "
+						+ join(dependencyTypes) + " };");
+				writer.println("\tprivate static final String[] DEPENDENCY_NAMES = { "
+						+ join(dependencyNames) + " };");
+				writer.println();
+				writer.println("\tpublic Class<?>[] getDependencyTypes() {");
+				writer.println("\t\treturn DEPENDENCY_TYPES.clone();");
+				writer.println("\t}");
+				writer.println();
+				writer.println("\tpublic String[] getDependencyNames() {");
+				writer.println("\t\treturn DEPENDENCY_NAMES.clone();");
+				writer.println("\t}");
+				writer.println();
+				writer.println("\t@SuppressWarnings({ \"unchecked\", \"rawtypes\" })");
+				writer.println("\tpublic " + beanName
+						+ " create(final org.yldt.ioc.ResourceManager manager) {");
+				writer.print(body);
+				writer.println("\t}");
+				writer.println("}");
+			} finally {
+				writer.close();
+			}
+		} catch (final IOException e) {
+			error(bean, "Failed to write factory [" + qualifiedFactory + "]: "
+					+ e.getMessage());
+			return;
+		}
+		beans.add(beanName);
+		factories.add(qualifiedFactory);
+		bindingArguments.add(bindingArguments(bean));
+	}
+
+	/**
+	 * The scope and quoted names declared by the {@link
+	 * org.yldt.ioc.annotations.Bean} annotation, with the defaults the
+	 * container applies to a bean bound by type.
+	 */
+	private String bindingArguments(final TypeElement bean) {
+		String scope = "Singleton";
+		final List<String> names = new ArrayList<String>();
+		for (final Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : findAnnotation(
+				bean, BEAN).getElementValues().entrySet()) {
+			final Object value = entry.getValue().getValue();
+			if (entry.getKey().getSimpleName().contentEquals("scope")) {
+				scope = ((VariableElement) value).getSimpleName().toString();
+			} else if (entry.getKey().getSimpleName().contentEquals("name")) {
+				for (final Object name : (List<?>) value)
+					names.add('"' + escape((String) ((AnnotationValue) name)
+							.getValue()) + '"');
+			}
+		}
+		if (names.isEmpty())
+			names.add('"' + processingEnv.getElementUtils().getBinaryName(bean)
+					.toString() + '"');
+		return "org.yldt.ioc.Scope." + scope + ", " + join(names);
+	}
+
+	/**
+	 * Appends field assignments and injector method calls in the order the
+	 * container uses: all fields from the bean class up, then all methods from
+	 * the bean class up.
+	 */
+	private boolean appendInjections(final StringBuilder body,
+			final TypeElement bean) {
+		final PackageElement beanPackage = packageOf(bean);
+		for (TypeElement type = bean; type != null; type = superClassOf(type)) {
+			for (final VariableElement field : ElementFilter.fieldsIn(type
+					.getEnclosedElements())) {
+				final AnnotationMirror inject = findInject(field);
+				if (inject == null)
+					continue;
+				if (!isAccessibleMember(field, type, beanPackage)
+						|| field.getModifiers().contains(Modifier.FINAL)) {
+					error(field,
+							"@Inject field must be non final and accessible from package ["
+									+ beanPackage.getQualifiedName()
+									+ "] for generated wiring");
+					return false;
+				}
+				body.append("\t\tbean.").append(field.getSimpleName())
+						.append(" = ");
+				if (!appendGetBean(body, field, inject, field.asType()))
+					return false;
+				body.append(";\n");
+			}
+		}
+		for (TypeElement type = bean; type != null; type = superClassOf(type)) {
+			for (final ExecutableElement method : ElementFilter.methodsIn(type
+					.getEnclosedElements())) {
+				if (findInject(method) == null)
+					continue;
+				if (!isAccessibleMember(method, type, beanPackage)) {
+					error(method,
+							"@Inject method must be accessible from package ["
+									+ beanPackage.getQualifiedName()
+									+ "] for generated wiring");
+					return false;
+				}
+				body.append("\t\tbean.").append(method.getSimpleName())
+						.append("(");
+				if (!appendArguments(body, method))
+					return false;
+				body.append(");\n");
+			}
+		}
+		return true;
+	}
+
+	private boolean appendArguments(final StringBuilder body,
+			final ExecutableElement executable) {
+		boolean first = true;
+		for (final VariableElement parameter : executable.getParameters()) {
+			if (!first)
+				body.append(", ");
+			first = false;
+			if (!appendGetBean(body, parameter, findInject(parameter),
+					parameter.asType()))
+				return false;
+		}
+		return true;
+	}
+
+	private boolean appendGetBean(final StringBuilder body,
+			final Element injectionPoint, final AnnotationMirror inject,
+			final TypeMirror type) {
+		if (findAnnotation(injectionPoint, LAZY) != null) {
+			error(injectionPoint,
+					"@Lazy is not supported for generated wiring, inject a Provider instead");
+			return false;
+		}
+		TypeMirror beanType = type;
+		String method = "getBean";
+		if (type.getKind() == TypeKind.DECLARED
+				&& isType((DeclaredType) type, PROVIDER)) {
+			final List<? extends TypeMirror> arguments = ((DeclaredType) type)
+					.getTypeArguments();
+			if (arguments.size() != 1) {
+				error(injectionPoint,
+						"Provider injection must declare the provided class as type argument");
+				return false;
+			}
+			beanType = arguments.get(0);
+			method = "getProvider";
+		}
+
+		final TypeMirror erased = processingEnv.getTypeUtils().erasure(
+				beanType);
+		if (erased.getKind() != TypeKind.DECLARED) {
+			error(injectionPoint, "Unsupported injection type [" + type
+					+ "] for generated wiring");
+			return false;
+		}
+		final TypeElement typeElement = (TypeElement) ((DeclaredType) erased)
+				.asElement();
+		final String name = injectName(inject);
+		final String literal = typeElement.getQualifiedName() + ".class";
+		body.append("manager.").append(method).append("(");
+		if (name != null)
+			body.append('"').append(escape(name)).append("\", ");
+		body.append(literal).append(")");
+		if (method.equals("getBean")) {
+			dependencyTypes.add(literal);
+			dependencyNames.add(name == null ? "null" : '"' + escape(name)
+					+ '"');
+		}
+		return true;
+	}
+
+	private void writeModule() {
+		final String module = moduleName();
+		final int lastDot = module.lastIndexOf('.');
+		final String packageName = lastDot < 0 ? "" : module.substring(0,
+				lastDot);
+		final String simpleName = module.substring(lastDot + 1);
+		try {
+			final PrintWriter writer = new PrintWriter(processingEnv.getFiler()
+					.createSourceFile(module).openWriter());
+			try {
+				if (packageName.length() > 0)
+					writer.println("package " + packageName + ";");
+				writer.println();
+				writer.println("/**");
+				writer.println(" * Generated by " + getClass().getName()
+						+ ". Do not edit.");
+				writer.println(" */");
+				writer.println("public final class " + simpleName
+						+ " implements org.yldt.ioc.Module {");
+				writer.println("\tpublic void configure(final org.yldt.ioc.ResourceManager manager) {");
+				writer.println("\t\tfinal org.yldt.ioc.Bindings bindings = manager.bindings();");
+				for (int i = 0; i < beans.size(); ++i)
+					writer.println("\t\tbindings.bindFactory(" + beans.get(i)
+							+ ".class, new " + factories.get(i) + "(), "
+							+ bindingArguments.get(i) + ");");
+				writer.println("\t\tbindings.commit();");
+				writer.println("\t}");
+				writer.println("}");
+			} finally {
+				writer.close();
+			}
+		} catch (final IOException e) {
+			error(null, "Failed to write module [" + module + "]: "
+					+ e.getMessage());
+		}
+	}
+
+	private String moduleName() {
+		final String module = processingEnv.getOptions().get(MODULE_OPTION);
+		return module == null || module.length() == 0 ? DEFAULT_MODULE
+				: module;
+	}
+
+	private boolean isAccessibleClass(final TypeElement type) {
+		if (!type.getModifiers().contains(Modifier.PUBLIC)
+				|| type.getModifiers().contains(Modifier.ABSTRACT))
+			return false;
+		if (type.getNestingKind() == NestingKind.TOP_LEVEL)
+			return true;
+		return type.getNestingKind() == NestingKind.MEMBER
+				&& type.getModifiers().contains(Modifier.STATIC)
+				&& isAccessibleClass((TypeElement) type.getEnclosingElement());
+	}
+
+	private boolean isAccessibleMember(final Element member,
+			final TypeElement declaringType, final PackageElement beanPackage) {
+		final Set<Modifier> modifiers = member.getModifiers();
+		if (modifiers.contains(Modifier.PUBLIC))
+			return true;
+		return !modifiers.contains(Modifier.PRIVATE)
+				&& packageOf(declaringType).equals(beanPackage);
+	}
+
+	private TypeElement superClassOf(final TypeElement type) {
+		final TypeMirror superClass = type.getSuperclass();
+		if (superClass.getKind() != TypeKind.DECLARED)
+			return null;
+		final TypeElement superElement = (TypeElement) ((DeclaredType) superClass)
+				.asElement();
+		if (superElement.getQualifiedName().contentEquals("java.lang.Object"))
+			return null;
+		return superElement;
+	}
+
+	private PackageElement packageOf(final Element element) {
+		return processingEnv.getElementUtils().getPackageOf(element);
+	}
+
+	private String flatName(final TypeElement type) {
+		if (type.getNestingKind() == NestingKind.MEMBER)
+			return flatName((TypeElement) type.getEnclosingElement()) + "_"
+					+ type.getSimpleName();
+		return type.getSimpleName().toString();
+	}
+
+	private AnnotationMirror findInject(final Element element) {
+		return findAnnotation(element, INJECT);
+	}
+
+	private AnnotationMirror findAnnotation(final Element element,
+			final String annotationType) {
+		for (final AnnotationMirror mirror : element.getAnnotationMirrors())
+			if (isType(mirror.getAnnotationType(), annotationType))
+				return mirror;
+		return null;
+	}
+
+	private boolean isType(final DeclaredType type, final String qualifiedName) {
+		return ((TypeElement) type.asElement()).getQualifiedName()
+				.contentEquals(qualifiedName);
+	}
+
+	private String injectName(final AnnotationMirror inject) {
+		if (inject == null)
+			return null;
+		for (final Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : inject
+				.getElementValues().entrySet())
+			if (entry.getKey().getSimpleName().contentEquals("value")) {
+				final String value = (String) entry.getValue().getValue();
+				return value.length() == 0 ? null : value;
+			}
+		return null;
+	}
+
+	private String escape(final String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	private String join(final List<String> values) {
+		final StringBuilder joined = new StringBuilder();
+		for (final String value : values) {
+			if (joined.length() > 0)
+				joined.append(", ");
+			joined.append(value);
+		}
+		return joined.toString();
+	}
+
+	private void error(final Element element, final String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+				message, element);
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package org.yldt.ioc.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.yldt.ioc.ApplicationBeanManager;
+import org.yldt.ioc.ContainerMetrics;
+import org.yldt.ioc.DependentBeanFactory;
+import org.yldt.ioc.generated.GeneratedModule;
+
+/**
+ * The beans of this package are processed by {@link BeanProcessor} when the
+ * tests are compiled.
+ * 
+ * @author Yun Liu
+ *
+ */
+public class BeanProcessorTest {
+
+    @Test
+    public void testGeneratedModuleWiresBeans() throws Exception {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.install(new GeneratedModule());
+        GeneratedInjectionBean bean = manager.getBean("injectionBean", GeneratedInjectionBean.class);
+        GeneratedSimpleBean simpleBean = manager.getBean(GeneratedSimpleBean.class);
+        assertTrue(simpleBean.getManager() == manager);
+        assertTrue(bean.simpleBean == simpleBean);
+        assertTrue(bean.injectWithMethod == simpleBean);
+        assertTrue(bean.provider.get() == simpleBean);
+        assertTrue(bean.namedBean == manager.getBean("named", GeneratedInjectionBean.NamedBean.class));
+    }
+
+    @Test
+    public void testGeneratedModuleBindsDeclaredScopeAndNames() throws Exception {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.install(new GeneratedModule());
+        GeneratedPrototypeBean bean = manager.getBean("prototype", GeneratedPrototypeBean.class);
+        assertTrue(bean != manager.getBean("prototype", GeneratedPrototypeBean.class));
+        assertTrue(manager.containsBean("otherPrototype"));
+        assertTrue(!manager.containsBean(GeneratedPrototypeBean.class.getName()));
+    }
+
+    @Test
+    public void testWiringNotCountedAsRequests() throws Exception {
+        ApplicationBeanManager manager = new ApplicationBeanManager();
+        manager.install(new GeneratedModule());
+        ContainerMetrics metrics = manager.enableMetrics();
+        GeneratedInjectionBean bean = manager.getBean("injectionBean", GeneratedInjectionBean.class);
+        assertEquals(1, metrics.getBeanRequests());
+        bean.provider.get();
+        assertEquals(2, metrics.getBeanRequests());
+        assertEquals(Long.valueOf(1), metrics.getBeanRequestsByKey().get(GeneratedSimpleBean.class.getName()));
+    }
+
+    @Test
+    public void testFactoriesDeclareDependencies() throws Exception {
+        DependentBeanFactory<?> factory = (DependentBeanFactory<?>) Class.forName(
+                GeneratedInjectionBean.class.getName() + BeanProcessor.FACTORY_SUFFIX).newInstance();
+        // the provider is not a dependency
+        assertEquals(Arrays.asList(GeneratedInjectionBean.NamedBean.class, GeneratedSimpleBean.class,
+                GeneratedSimpleBean.class), Arrays.asList(factory.getDependencyTypes()));
+        assertEquals("named", factory.getDependencyNames()[0]);
+    }
+
+    @Test
+    public void testFactoriesGenerated() throws Exception {
+        Class.forName(GeneratedSimpleBean.class.getName() + BeanProcessor.FACTORY_SUFFIX);
+        Class.forName(GeneratedInjectionBean.class.getPackage().getName()
+                + ".GeneratedInjectionBean_NamedBean" + BeanProcessor.FACTORY_SUFFIX);
+    }
+}